@@ -0,0 +1,94 @@
+package de.fruiture.cor.jenkins;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** Synthetic, reproducible inputs of the benchmarks. */
+final class Datasets {
+
+  private static final String[] WORDS =
+      ("fix add remove update refactor test docs build parser cache release pipeline tags version"
+              + " module config logging timeout retry")
+          .split(" ");
+
+  private Datasets() {}
+
+  /**
+   * The output of {@code git tag -l} with {@code count} tags, in the order of git. Every release is
+   * preceded by a few numbered snapshots of it, the last tags are snapshots after the last release.
+   */
+  static String tags(String prefix, int count) {
+    Random random = new Random(count);
+    List<String> tags = new ArrayList<>(count);
+    int major = 0;
+    int minor = 0;
+    int patch = 0;
+    while (tags.size() < count) {
+      int bump = random.nextInt(100);
+      if (bump == 0) {
+        major++;
+        minor = 0;
+        patch = 0;
+      } else if (bump < 20) {
+        minor++;
+        patch = 0;
+      } else {
+        patch++;
+      }
+      String version = major + "." + minor + "." + patch;
+      int snapshots = random.nextInt(5);
+      for (int s = 0; s < snapshots && tags.size() < count; s++) {
+        tags.add(prefix + version + "-SNAPSHOT." + s);
+      }
+      if (tags.size() < count && random.nextInt(10) > 0) {
+        tags.add(prefix + version);
+      }
+    }
+    Collections.sort(tags);
+    StringBuilder text = new StringBuilder(count * 20);
+    for (String tag : tags) {
+      text.append(tag).append('\n');
+    }
+    return text.toString();
+  }
+
+  /**
+   * The output of {@code git log --pretty=oneline} of about {@code size} characters. One in a
+   * hundred messages contains the minor trigger, the major trigger is in the last line only, so
+   * scanning cannot stop early.
+   */
+  static String log(int size, boolean major) {
+    Random random = new Random(size);
+    StringBuilder text = new StringBuilder(size + 100);
+    while (text.length() < size) {
+      for (int i = 0; i < 40; i++) {
+        text.append(Character.forDigit(random.nextInt(16), 16));
+      }
+      text.append(' ');
+      int words = 3 + random.nextInt(8);
+      for (int i = 0; i < words; i++) {
+        text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+      }
+      if (random.nextInt(100) == 0) {
+        text.append("CHANGE:MINOR");
+      }
+      text.append('\n');
+    }
+    if (major) {
+      text.append("0123456789012345678901234567890123456789 CHANGE:MAJOR\n");
+    }
+    return text.toString();
+  }
+
+  /** {@code count} triggers, half of them plain words and half regular expressions */
+  static List<String> triggers(String kind, int count) {
+    List<String> triggers = new ArrayList<>(count);
+    triggers.add("CHANGE:" + kind);
+    for (int i = 1; i < count; i++) {
+      triggers.add(i % 2 == 0 ? kind.toLowerCase() + "-" + i : "\\b" + kind + "\\(" + i + "\\)");
+    }
+    return triggers;
+  }
+}
@@ -0,0 +1,73 @@
+package de.fruiture.cor.jenkins;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessagesBenchmark {
+
+  /** characters of the log */
+  @Param({"65536", "1048576", "8388608"})
+  int size;
+
+  /** triggers per change level */
+  @Param({"1", "64"})
+  int triggers;
+
+  private String log;
+  private VersionCalculator template;
+
+  @Setup
+  public void setUp() {
+    log = Datasets.log(size, true);
+    template = VersionCalculator.snapshot("v");
+    template.setTriggerMinorChange(Datasets.triggers("MINOR", triggers));
+    template.setTriggerMajorChange(Datasets.triggers("MAJOR", triggers));
+    template.tags("v1.0.0\nv1.1.0-SNAPSHOT.3");
+  }
+
+  private VersionCalculator calculator() {
+    VersionCalculator vc = VersionCalculator.snapshot("v");
+    vc.setTriggerMinorChange(template.getTriggerMinorChange());
+    vc.setTriggerMajorChange(template.getTriggerMajorChange());
+    return vc;
+  }
+
+  /** includes building the scanner of the triggers */
+  @Benchmark
+  public String messages() {
+    VersionCalculator vc = calculator();
+    vc.messages(log);
+    return vc.getNextVersion();
+  }
+
+  @Benchmark
+  public String messagesReader() throws IOException {
+    VersionCalculator vc = calculator();
+    vc.messages(new StringReader(log));
+    return vc.getNextVersion();
+  }
+
+  /** with the triggers compiled already */
+  @Benchmark
+  public Object scan() {
+    return template.triggerScanner().scan(log);
+  }
+}
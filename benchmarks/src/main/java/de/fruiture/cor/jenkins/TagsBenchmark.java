@@ -0,0 +1,67 @@
+package de.fruiture.cor.jenkins;
+
+import de.fruiture.cor.jenkins.VersioningStrategy.Change;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TagsBenchmark {
+
+  @Param({"1000", "100000", "1000000"})
+  int count;
+
+  @Param({"snapshot", "release"})
+  String strategy;
+
+  private String tags;
+  private VersionCalculator filled;
+
+  @Setup
+  public void setUp() {
+    tags = Datasets.tags("v", count);
+    filled = calculator();
+    filled.tags(tags);
+  }
+
+  private VersionCalculator calculator() {
+    return strategy.equals("snapshot")
+        ? VersionCalculator.snapshot("v")
+        : VersionCalculator.release("v");
+  }
+
+  @Benchmark
+  public VersionCalculator tags() {
+    VersionCalculator vc = calculator();
+    vc.tags(tags);
+    return vc;
+  }
+
+  /** finds the reference tag among the parsed tags, the change only resets the result */
+  @Benchmark
+  public Optional<String> referenceTag() {
+    filled.messages(Change.PATCH);
+    return filled.getReferenceTag();
+  }
+
+  @Benchmark
+  public String nextVersion() {
+    filled.messages(Change.PATCH);
+    return filled.getNextVersion();
+  }
+}
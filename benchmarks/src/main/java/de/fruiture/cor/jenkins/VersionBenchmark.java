@@ -0,0 +1,55 @@
+package de.fruiture.cor.jenkins;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VersionBenchmark {
+
+  private Version[] versions;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    String[] tags = Datasets.tags("", 1024).split("\n");
+    versions = new Version[tags.length];
+    for (int i = 0; i < tags.length; i++) {
+      versions[i] = new Version(tags[i]);
+    }
+  }
+
+  private Version next() {
+    next = (next + 1) & 1023;
+    return versions[next];
+  }
+
+  @Benchmark
+  public int compareTo() {
+    return next().compareTo(versions[(next * 31) & 1023]);
+  }
+
+  @Benchmark
+  public Version parse() {
+    return new Version(next().toString());
+  }
+
+  @Benchmark
+  public Version incrementPreReleaseVersion() {
+    Version v = next();
+    return v.isSnapshot() ? v.incrementPreReleaseVersion() : v.incrementPatchVersion("SNAPSHOT.0");
+  }
+}
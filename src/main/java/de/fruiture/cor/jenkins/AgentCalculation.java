@@ -0,0 +1,92 @@
+package de.fruiture.cor.jenkins;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+import jenkins.security.MasterToSlaveCallable;
+
+/**
+ * Calculates the next version on the agent that holds the workspace. Tags are read from the
+ * repository and the log from the local git, and only the result is sent back to the controller
+ * instead of their output.
+ *
+ * <pre>
+ * def result = workspace.channel.call(new AgentCalculation(vc, workspace.remote))
+ * sh("git ${result.gitNextTagCommand}")
+ * </pre>
+ */
+public final class AgentCalculation
+    extends MasterToSlaveCallable<AgentCalculation.Result, IOException> {
+
+  private static final long serialVersionUID = 1L;
+
+  /** The versions and commands of a calculation. */
+  public static final class Result implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final String referenceTag;
+    private final String nextVersion;
+    private final String nextVersionTag;
+    private final String gitNextTagCommand;
+    private final String gitPushTagCommand;
+
+    Result(VersionCalculator vc) {
+      this.referenceTag = vc.getReferenceTag().orElse(null);
+      this.nextVersion = vc.getNextVersion();
+      this.nextVersionTag = vc.getNextVersionTag();
+      this.gitNextTagCommand = vc.getGitNextTagCommand();
+      this.gitPushTagCommand = vc.getGitPushTagCommand();
+    }
+
+    public Optional<String> getReferenceTag() {
+      return Optional.ofNullable(referenceTag);
+    }
+
+    public String getNextVersion() {
+      return nextVersion;
+    }
+
+    public String getNextVersionTag() {
+      return nextVersionTag;
+    }
+
+    public String getGitNextTagCommand() {
+      return gitNextTagCommand;
+    }
+
+    public String getGitPushTagCommand() {
+      return gitPushTagCommand;
+    }
+
+    @Override
+    public String toString() {
+      return nextVersionTag;
+    }
+  }
+
+  private final VersionCalculator calculator;
+  private final String repository;
+
+  /**
+   * @param calculator configured, but without tags, messages or reservations, as the agent's copy
+   *     could not release them
+   * @param repository the path of the working tree on the agent
+   */
+  public AgentCalculation(VersionCalculator calculator, String repository) {
+    if (calculator.usesReservations()) {
+      throw new IllegalArgumentException("versions cannot be reserved on the agent");
+    }
+    this.calculator = calculator;
+    this.repository = repository;
+  }
+
+  @Override
+  public Result call() throws IOException {
+    Path path = Paths.get(repository);
+    calculator.tags(path);
+    VersionBatch.log(path, calculator);
+    return new Result(calculator);
+  }
+}
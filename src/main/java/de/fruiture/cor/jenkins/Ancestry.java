@@ -0,0 +1,246 @@
+package de.fruiture.cor.jenkins;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which commits are ancestors of HEAD, like {@code git tag --merged HEAD}, without running
+ * git.
+ *
+ * <p>The walk from HEAD is shared by all questions and only goes as deep as needed. Commits in the
+ * commit-graph are visited highest generation first, so the walk can stop as soon as all remaining
+ * commits have a lower generation than the one asked for. Commits that are not in the commit-graph
+ * (all of them, if there is none) are read from the object database and always visited first.
+ *
+ * <p>An object that is missing, like in a partial clone, fails the walk with an {@link IOException}
+ * rather than being taken as unreachable, which could silently drop a tag. The boundary commits of
+ * a shallow clone have no parents, like for git.
+ */
+final class Ancestry implements Closeable {
+
+  private static final Pattern SHA256 =
+      Pattern.compile("(?im)^\\s*objectformat\\s*=\\s*sha256\\s*$");
+
+  private final GitObjects objects;
+  private final CommitGraph graph;
+  private final Set<ByteBuffer> shallow = new HashSet<>();
+
+  private final BitSet visited = new BitSet();
+  private final Set<ByteBuffer> visitedLoose = new HashSet<>();
+  private final ArrayDeque<byte[]> loose = new ArrayDeque<>();
+
+  /** binary max-heap of graph positions by generation */
+  private int[] heap = new int[64];
+
+  private int heapSize;
+
+  private Ancestry(GitObjects objects, CommitGraph graph) {
+    this.objects = objects;
+    this.graph = graph;
+  }
+
+  /** Starts a walk from the HEAD of the repository. */
+  static Ancestry open(GitRefs refs) throws IOException {
+    Path config = refs.commonDir().resolve("config");
+    int idLength =
+        Files.isRegularFile(config)
+                && SHA256
+                    .matcher(new String(Files.readAllBytes(config), StandardCharsets.UTF_8))
+                    .find()
+            ? 32
+            : 20;
+
+    Path objectsDirectory = refs.commonDir().resolve("objects");
+    GitObjects objects = new GitObjects(objectsDirectory, idLength);
+    try {
+      Path shallowFile = refs.commonDir().resolve("shallow");
+      // like git, ignore the commit-graph of shallow repositories
+      boolean shallow = Files.isRegularFile(shallowFile);
+      CommitGraph graph = shallow ? null : CommitGraph.open(objectsDirectory, idLength);
+      Ancestry ancestry = new Ancestry(objects, graph);
+      if (shallow) {
+        for (String line : Files.readAllLines(shallowFile, StandardCharsets.US_ASCII)) {
+          if (!line.trim().isEmpty()) {
+            ancestry.shallow.add(ByteBuffer.wrap(GitObjects.id(line.trim())));
+          }
+        }
+      }
+      String head = refs.resolve("HEAD");
+      if (head != null) {
+        ancestry.visit(GitObjects.id(head));
+      }
+      return ancestry;
+    } catch (IOException | RuntimeException e) {
+      objects.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Whether the object, after peeling annotated tags, is a commit reachable from HEAD.
+   *
+   * @param objectId hexadecimal object id
+   */
+  boolean reaches(String objectId) throws IOException {
+    byte[] id = GitObjects.id(objectId);
+    int position = graph != null ? graph.position(id) : -1;
+    if (position < 0) {
+      id = peel(id);
+      if (id == null) {
+        return false;
+      }
+      position = graph != null ? graph.position(id) : -1;
+    }
+
+    if (position >= 0) {
+      long generation = graph.generation(position);
+      while (!visited.get(position)
+          && (!loose.isEmpty() || (heapSize > 0 && graph.generation(heap[0]) >= generation))) {
+        step();
+      }
+      return visited.get(position);
+    }
+
+    // commits outside of the graph can only be reached through other commits outside of it
+    ByteBuffer key = ByteBuffer.wrap(id);
+    while (!visitedLoose.contains(key) && !loose.isEmpty()) {
+      step();
+    }
+    return visitedLoose.contains(key);
+  }
+
+  /** the commit an object refers to, or null if it is no commit */
+  private byte[] peel(byte[] id) throws IOException {
+    byte[] current = id;
+    for (int depth = 0; depth < 10; depth++) {
+      GitObjects.RawObject object = read(current);
+      if (object.type == GitObjects.COMMIT) {
+        return current;
+      } else if (object.type != GitObjects.TAG) {
+        return null;
+      }
+      String header =
+          new String(object.data, 0, Math.min(100, object.data.length), StandardCharsets.US_ASCII);
+      if (!header.startsWith("object ")) {
+        throw new IOException("corrupt tag " + GitObjects.hex(current));
+      }
+      current = GitObjects.id(header.substring(7, 7 + objects.idLength() * 2));
+    }
+    return null;
+  }
+
+  private void visit(byte[] id) {
+    int position = graph != null ? graph.position(id) : -1;
+    if (position >= 0) {
+      visit(position);
+    } else if (visitedLoose.add(ByteBuffer.wrap(id))) {
+      loose.add(id);
+    }
+  }
+
+  private void visit(int position) {
+    if (visited.get(position)) {
+      return;
+    }
+    visited.set(position);
+    if (heapSize == heap.length) {
+      heap = Arrays.copyOf(heap, heapSize * 2);
+    }
+    int i = heapSize++;
+    long generation = graph.generation(position);
+    while (i > 0 && graph.generation(heap[(i - 1) / 2]) < generation) {
+      heap[i] = heap[(i - 1) / 2];
+      i = (i - 1) / 2;
+    }
+    heap[i] = position;
+  }
+
+  private int pop() {
+    int top = heap[0];
+    int last = heap[--heapSize];
+    long generation = graph.generation(last);
+    int i = 0;
+    while (2 * i + 1 < heapSize) {
+      int child = 2 * i + 1;
+      if (child + 1 < heapSize
+          && graph.generation(heap[child + 1]) > graph.generation(heap[child])) {
+        child++;
+      }
+      if (graph.generation(heap[child]) <= generation) {
+        break;
+      }
+      heap[i] = heap[child];
+      i = child;
+    }
+    heap[i] = last;
+    return top;
+  }
+
+  /** visits the parents of the next commit */
+  private void step() throws IOException {
+    if (!loose.isEmpty()) {
+      byte[] id = loose.poll();
+      if (shallow.contains(ByteBuffer.wrap(id))) {
+        return;
+      }
+      GitObjects.RawObject commit = read(id);
+      if (commit.type != GitObjects.COMMIT) {
+        throw new IOException("not a commit: " + GitObjects.hex(id));
+      }
+      parents(commit.data);
+    } else {
+      graph.parents(pop(), this::visit);
+    }
+  }
+
+  private GitObjects.RawObject read(byte[] id) throws IOException {
+    GitObjects.RawObject object = objects.read(id);
+    if (object == null) {
+      throw new IOException(
+          "missing object "
+              + GitObjects.hex(id)
+              + ", the clone is incomplete: fetch it or list"
+              + " the tags with git");
+    }
+    return object;
+  }
+
+  private void parents(byte[] commit) {
+    int line = 0;
+    int idLength = objects.idLength();
+    while (line < commit.length && commit[line] != '\n') {
+      int end = GitObjects.indexOf(commit, (byte) '\n', line);
+      if (end < 0) {
+        end = commit.length;
+      }
+      if (end - line == 7 + idLength * 2 && startsWith(commit, line, "parent ")) {
+        visit(GitObjects.id(new String(commit, line + 7, idLength * 2, StandardCharsets.US_ASCII)));
+      }
+      line = end + 1;
+    }
+  }
+
+  private static boolean startsWith(byte[] data, int at, String prefix) {
+    for (int i = 0; i < prefix.length(); i++) {
+      if (data[at + i] != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    objects.close();
+  }
+}
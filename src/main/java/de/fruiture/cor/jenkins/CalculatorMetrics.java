@@ -0,0 +1,221 @@
+package de.fruiture.cor.jenkins;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and timers of {@link VersionCalculator}s that {@link
+ * VersionCalculator#useMetrics(CalculatorMetrics) use} them. One instance can be shared by any
+ * number of calculators and threads. Calculators without metrics only check for null.
+ *
+ * <p>Time per trigger is measured for the triggers that are searched one by one. Literal triggers,
+ * the triggers searched in linear time and the triggers combined into one regular expression are
+ * each searched together, so they are timed together as {@link #LITERAL_TRIGGERS}, {@link
+ * #AUTOMATON_TRIGGERS} and {@link #COMBINED_TRIGGERS}.
+ */
+public final class CalculatorMetrics implements CalculatorMetricsMXBean {
+
+  public static final String LITERAL_TRIGGERS = "(literal triggers)";
+  public static final String AUTOMATON_TRIGGERS = "(automaton triggers)";
+  public static final String COMBINED_TRIGGERS = "(combined triggers)";
+
+  private final LongAdder tagsSeen = new LongAdder();
+  private final LongAdder tagsAccepted = new LongAdder();
+  private final LongAdder tagsNanos = new LongAdder();
+  private final LongAdder messageBytes = new LongAdder();
+  private final ConcurrentMap<String, LongAdder> triggerNanos = new ConcurrentHashMap<>();
+  private final LongAdder nextVersionNanos = new LongAdder();
+
+  /** Totals at one point in time, to be logged. */
+  public static final class Snapshot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final long tagsSeen;
+    private final long tagsAccepted;
+    private final long tagsNanos;
+    private final long messageBytes;
+    private final Map<String, Long> triggerNanos;
+    private final long nextVersionNanos;
+
+    private Snapshot(CalculatorMetrics metrics) {
+      this.tagsSeen = metrics.tagsSeen.sum();
+      this.tagsAccepted = metrics.tagsAccepted.sum();
+      this.tagsNanos = metrics.tagsNanos.sum();
+      this.messageBytes = metrics.messageBytes.sum();
+      Map<String, Long> triggerNanos = new TreeMap<>();
+      metrics.triggerNanos.forEach((trigger, nanos) -> triggerNanos.put(trigger, nanos.sum()));
+      this.triggerNanos = Collections.unmodifiableMap(triggerNanos);
+      this.nextVersionNanos = metrics.nextVersionNanos.sum();
+    }
+
+    /** candidates that look like a version tag with the prefix */
+    public long getTagsSeen() {
+      return tagsSeen;
+    }
+
+    public long getTagsAccepted() {
+      return tagsAccepted;
+    }
+
+    /** candidates that are no valid version or, if read from the repository, not merged */
+    public long getTagsRejected() {
+      return tagsSeen - tagsAccepted;
+    }
+
+    public long getTagsNanos() {
+      return tagsNanos;
+    }
+
+    /** the length of the scanned messages in UTF-8 */
+    public long getMessageBytesScanned() {
+      return messageBytes;
+    }
+
+    /** nanoseconds spent searching per trigger */
+    public Map<String, Long> getTriggerNanos() {
+      return triggerNanos;
+    }
+
+    public long getNextVersionNanos() {
+      return nextVersionNanos;
+    }
+
+    @Override
+    public String toString() {
+      return "tags seen="
+          + tagsSeen
+          + " accepted="
+          + tagsAccepted
+          + " rejected="
+          + getTagsRejected()
+          + " in "
+          + millis(tagsNanos)
+          + ", message bytes scanned="
+          + messageBytes
+          + ", triggers "
+          + triggerNanos
+              .entrySet()
+              .stream()
+              .map(e -> e.getKey() + "=" + millis(e.getValue()))
+              .collect(Collectors.joining(", ", "{", "}"))
+          + ", next version in "
+          + millis(nextVersionNanos);
+    }
+
+    private static String millis(long nanos) {
+      return String.format(Locale.ROOT, "%.3fms", nanos / 1e6);
+    }
+  }
+
+  public Snapshot snapshot() {
+    return new Snapshot(this);
+  }
+
+  /**
+   * Makes the totals available through the platform MBean server.
+   *
+   * @param name distinguishes several instances
+   */
+  public ObjectName register(String name) throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName objectName =
+        new ObjectName(
+            getClass().getPackage().getName()
+                + ":type=CalculatorMetrics,name="
+                + ObjectName.quote(name));
+    server.registerMBean(this, objectName);
+    return objectName;
+  }
+
+  @Override
+  public long getTagsSeen() {
+    return tagsSeen.sum();
+  }
+
+  @Override
+  public long getTagsAccepted() {
+    return tagsAccepted.sum();
+  }
+
+  @Override
+  public long getTagsRejected() {
+    return tagsSeen.sum() - tagsAccepted.sum();
+  }
+
+  @Override
+  public long getTagsNanos() {
+    return tagsNanos.sum();
+  }
+
+  @Override
+  public long getMessageBytesScanned() {
+    return messageBytes.sum();
+  }
+
+  @Override
+  public Map<String, Long> getTriggerNanos() {
+    return snapshot().getTriggerNanos();
+  }
+
+  @Override
+  public long getNextVersionNanos() {
+    return nextVersionNanos.sum();
+  }
+
+  @Override
+  public void reset() {
+    tagsSeen.reset();
+    tagsAccepted.reset();
+    tagsNanos.reset();
+    messageBytes.reset();
+    triggerNanos.clear();
+    nextVersionNanos.reset();
+  }
+
+  void tags(int seen, long nanos) {
+    tagsSeen.add(seen);
+    tagsNanos.add(nanos);
+  }
+
+  void tagAccepted() {
+    tagsAccepted.increment();
+  }
+
+  /** Adds the UTF-8 length of {@code text[from, to)}. */
+  void messages(CharSequence text, int from, int to) {
+    long bytes = 0;
+    for (int i = from; i < to; i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        bytes++;
+      } else if (c < 0x800) {
+        bytes += 2;
+      } else if (Character.isSurrogate(c)) {
+        // half of a pair, which may be split between two texts
+        bytes += 2;
+      } else {
+        bytes += 3;
+      }
+    }
+    messageBytes.add(bytes);
+  }
+
+  void trigger(String trigger, long nanos) {
+    triggerNanos.computeIfAbsent(trigger, t -> new LongAdder()).add(nanos);
+  }
+
+  void nextVersion(long nanos) {
+    nextVersionNanos.add(nanos);
+  }
+}
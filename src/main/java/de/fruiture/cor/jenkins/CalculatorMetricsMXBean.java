@@ -0,0 +1,29 @@
+package de.fruiture.cor.jenkins;
+
+import java.util.Map;
+
+/** The totals of {@link CalculatorMetrics} as seen through JMX. */
+public interface CalculatorMetricsMXBean {
+
+  long getTagsSeen();
+
+  long getTagsAccepted();
+
+  long getTagsRejected();
+
+  long getTagsNanos();
+
+  /** the length of the scanned messages in UTF-8 */
+  long getMessageBytesScanned();
+
+  /**
+   * Nanoseconds spent searching, per trigger for those searched one by one. The triggers searched
+   * together are summed up under {@link CalculatorMetrics#LITERAL_TRIGGERS}, {@link
+   * CalculatorMetrics#AUTOMATON_TRIGGERS} and {@link CalculatorMetrics#COMBINED_TRIGGERS}.
+   */
+  Map<String, Long> getTriggerNanos();
+
+  long getNextVersionNanos();
+
+  void reset();
+}
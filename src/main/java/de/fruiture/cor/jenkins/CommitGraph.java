@@ -0,0 +1,234 @@
+package de.fruiture.cor.jenkins;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+/**
+ * A {@code commit-graph} file or chain of files, read into memory.
+ *
+ * <p>The files are read rather than memory-mapped, like {@code packed-refs} by {@link GitRefs}: a
+ * mapping would keep them locked on Windows, so {@code git gc} or {@code git commit-graph write}
+ * could not replace them.
+ *
+ * <p>Commits are identified by their position in the graph. A chain's layers are numbered one after
+ * the other, base first, like git does.
+ */
+final class CommitGraph {
+
+  /** generation of commits whose generation is unknown */
+  static final long INFINITY = Long.MAX_VALUE;
+
+  private static final int SIGNATURE = 0x43475048; // "CGPH"
+  private static final int OIDF = 0x4f494446;
+  private static final int OIDL = 0x4f49444c;
+  private static final int CDAT = 0x43444154;
+  private static final int EDGE = 0x45444745;
+
+  private static final int NO_PARENT = 0x70000000;
+  private static final int EXTRA_EDGES = 0x80000000;
+
+  private final Layer[] layers;
+  private final int idLength;
+  private final boolean generations;
+
+  private CommitGraph(Layer[] layers, int idLength) {
+    this.layers = layers;
+    this.idLength = idLength;
+    boolean generations = true;
+    for (Layer layer : layers) {
+      generations &= layer.generations();
+    }
+    this.generations = generations;
+  }
+
+  /**
+   * Opens the commit-graph of the {@code objects} directory, or returns null if there is none.
+   *
+   * @param idLength length of object ids, the graph is ignored if it uses another hash
+   */
+  static CommitGraph open(Path objects, int idLength) throws IOException {
+    List<Path> files = new ArrayList<>();
+    Path single = objects.resolve("info/commit-graph");
+    Path chain = objects.resolve("info/commit-graphs/commit-graph-chain");
+    if (Files.isRegularFile(single)) {
+      files.add(single);
+    } else if (Files.isRegularFile(chain)) {
+      for (String line : Files.readAllLines(chain, StandardCharsets.US_ASCII)) {
+        if (!line.trim().isEmpty()) {
+          files.add(chain.resolveSibling("graph-" + line.trim() + ".graph"));
+        }
+      }
+    }
+    if (files.isEmpty()) {
+      return null;
+    }
+
+    Layer[] layers = new Layer[files.size()];
+    int base = 0;
+    for (int i = 0; i < layers.length; i++) {
+      layers[i] = new Layer(files.get(i), base);
+      if (layers[i].idLength != idLength) {
+        return null;
+      }
+      base += layers[i].count;
+    }
+    return new CommitGraph(layers, idLength);
+  }
+
+  /** the position of the commit or -1 if it is not in the graph */
+  int position(byte[] id) {
+    for (int i = layers.length - 1; i >= 0; i--) {
+      int position = layers[i].find(id);
+      if (position >= 0) {
+        return position;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * The topological level of the commit, which is greater than that of all its ancestors, or {@link
+   * #INFINITY} if the graph was written without generation numbers.
+   */
+  long generation(int position) {
+    return generations ? layer(position).generation(position) : INFINITY;
+  }
+
+  /** Reports the positions of the commit's parents. */
+  void parents(int position, IntConsumer parents) {
+    layer(position).parents(position, parents);
+  }
+
+  byte[] id(int position) {
+    Layer layer = layer(position);
+    byte[] id = new byte[idLength];
+    for (int i = 0; i < idLength; i++) {
+      id[i] = layer.buffer.get(layer.ids + (position - layer.base) * idLength + i);
+    }
+    return id;
+  }
+
+  private Layer layer(int position) {
+    for (int i = layers.length - 1; i > 0; i--) {
+      if (position >= layers[i].base) {
+        return layers[i];
+      }
+    }
+    return layers[0];
+  }
+
+  private static final class Layer {
+    private final ByteBuffer buffer;
+    private final int base;
+    private final int idLength;
+    private final int count;
+    private final int fanout;
+    private final int ids;
+    private final int data;
+    private final int edges;
+
+    Layer(Path file, int base) throws IOException {
+      this.buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+      this.base = base;
+      if (buffer.limit() < 8 || buffer.getInt(0) != SIGNATURE || buffer.get(4) != 1) {
+        throw new IOException("unsupported commit-graph: " + file);
+      }
+      int hashVersion = buffer.get(5);
+      this.idLength = hashVersion == 1 ? 20 : hashVersion == 2 ? 32 : -1;
+
+      int chunks = buffer.get(6) & 0xff;
+      int fanout = -1;
+      int ids = -1;
+      int data = -1;
+      int edges = -1;
+      for (int i = 0; i < chunks; i++) {
+        int entry = 8 + i * 12;
+        int offset = (int) buffer.getLong(entry + 4);
+        switch (buffer.getInt(entry)) {
+          case OIDF:
+            fanout = offset;
+            break;
+          case OIDL:
+            ids = offset;
+            break;
+          case CDAT:
+            data = offset;
+            break;
+          case EDGE:
+            edges = offset;
+            break;
+          default:
+        }
+      }
+      if (fanout < 0 || ids < 0 || data < 0) {
+        throw new IOException("incomplete commit-graph: " + file);
+      }
+      this.fanout = fanout;
+      this.ids = ids;
+      this.data = data;
+      this.edges = edges;
+      this.count = buffer.getInt(fanout + 255 * 4);
+    }
+
+    /** whether all commits have a generation number, old versions of git wrote zeros */
+    boolean generations() {
+      for (int i = 0; i < count; i++) {
+        if (buffer.getInt(data + i * (idLength + 16) + idLength + 8) >>> 2 == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    int find(byte[] id) {
+      int first = id[0] & 0xff;
+      int low = first == 0 ? 0 : buffer.getInt(fanout + (first - 1) * 4);
+      int high = buffer.getInt(fanout + first * 4);
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        int result = GitObjects.compare(buffer, ids + middle * idLength, id);
+        if (result < 0) {
+          low = middle + 1;
+        } else if (result > 0) {
+          high = middle;
+        } else {
+          return base + middle;
+        }
+      }
+      return -1;
+    }
+
+    long generation(int position) {
+      return buffer.getInt(data + (position - base) * (idLength + 16) + idLength + 8) >>> 2;
+    }
+
+    void parents(int position, IntConsumer parents) {
+      int entry = data + (position - base) * (idLength + 16) + idLength;
+      int first = buffer.getInt(entry);
+      int second = buffer.getInt(entry + 4);
+      if (first != NO_PARENT) {
+        parents.accept(first);
+      }
+      if (second == NO_PARENT) {
+        return;
+      } else if ((second & EXTRA_EDGES) == 0) {
+        parents.accept(second);
+        return;
+      }
+
+      int edge = edges + (second & ~EXTRA_EDGES) * 4;
+      int parent;
+      do {
+        parent = buffer.getInt(edge);
+        parents.accept(parent & ~EXTRA_EDGES);
+        edge += 4;
+      } while ((parent & EXTRA_EDGES) == 0);
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package de.fruiture.cor.jenkins;
+
+import de.fruiture.cor.jenkins.VersioningStrategy.Change;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * Finds the change level of commits that follow the <a
+ * href="https://www.conventionalcommits.org/">Conventional Commits</a> specification: {@code feat}
+ * is a minor change, a {@code !} after the type or a {@code BREAKING CHANGE} footer is a major one,
+ * and every other commit is a patch.
+ *
+ * <p>Reads the output of {@code git log} in {@link #LOG_FORMAT}, where every commit starts with a
+ * record separator followed by its hash and message. The commits are looked at as views of the log
+ * and each message is scanned once from front to back. Scanning stops at the first major change.
+ */
+final class ConventionalCommits {
+
+  static final char RECORD_SEPARATOR = '\u001e';
+
+  static final String LOG_FORMAT = "--pretty=format:%x1e%H%n%B";
+
+  /** also searched in every message, or null */
+  private final TriggerScanner triggers;
+
+  private Change change;
+  private String commit;
+
+  ConventionalCommits(TriggerScanner triggers) {
+    this.triggers = triggers;
+  }
+
+  /** the highest change level of all commits, or null if there were none */
+  Change getChange() {
+    return change;
+  }
+
+  /** the hash of the newest commit with the highest change level, or null */
+  String getCommit() {
+    return commit;
+  }
+
+  boolean isMajor() {
+    return change == Change.MAJOR;
+  }
+
+  /** Classifies all commits of {@code log}. */
+  void scan(CharSequence log) {
+    scan(log, 0, log.length());
+  }
+
+  /**
+   * Like {@link #scan(CharSequence)}, but reads the log in chunks of {@code bufferSize} characters.
+   * Only the commit being read is buffered.
+   */
+  void scan(Reader log, int bufferSize) throws IOException {
+    char[] buffer = new char[bufferSize];
+    StringBuilder pending = new StringBuilder();
+    int n;
+    while (!isMajor() && (n = log.read(buffer)) >= 0) {
+      int start = pending.length();
+      pending.append(buffer, 0, n);
+      int complete = -1;
+      for (int i = pending.length() - 1; i >= Math.max(start, 1); i--) {
+        if (pending.charAt(i) == RECORD_SEPARATOR) {
+          complete = i;
+          break;
+        }
+      }
+      if (complete > 0) {
+        scan(pending, 0, complete);
+        pending.delete(0, complete);
+      }
+    }
+    if (!isMajor()) {
+      scan(pending, 0, pending.length());
+    }
+  }
+
+  /** Classifies the commits in {@code log} from {@code start} to {@code end}. */
+  void scan(CharSequence log, int start, int end) {
+    int record = indexOf(log, RECORD_SEPARATOR, start, end);
+    while (record < end && !isMajor()) {
+      int next = indexOf(log, RECORD_SEPARATOR, record + 1, end);
+      int message = Math.min(indexOf(log, '\n', record + 1, next) + 1, next);
+      commit(log, record + 1, message, next);
+      record = next;
+    }
+  }
+
+  private void commit(CharSequence log, int hash, int message, int end) {
+    Change level = classify(log, message, end);
+    if (triggers != null && level != Change.MAJOR) {
+      Change triggered = triggers.scan(CharBuffer.wrap(log, message, end));
+      if (triggered != null && (level == null || triggered.compareTo(level) > 0)) {
+        level = triggered;
+      }
+    }
+    if (level != null && (change == null || level.compareTo(change) > 0)) {
+      int hashEnd = message > hash && log.charAt(message - 1) == '\n' ? message - 1 : message;
+      add(level, log.subSequence(hash, hashEnd).toString().trim());
+    }
+  }
+
+  /** Counts a commit that was classified elsewhere, older than the ones before. */
+  void add(Change level, String hash) {
+    if (level != null && (change == null || level.compareTo(change) > 0)) {
+      change = level;
+      commit = hash;
+    }
+  }
+
+  /** the change level of a single message, or null if it is blank */
+  static Change classify(CharSequence message) {
+    return classify(message, 0, message.length());
+  }
+
+  static Change classify(CharSequence text, int start, int end) {
+    int i = start;
+    while (i < end && text.charAt(i) <= ' ') {
+      i++;
+    }
+    if (i == end) {
+      return null;
+    }
+
+    // header: type(scope)!: description
+    Change change = Change.PATCH;
+    int type = i;
+    while (i < end && Character.isLetter(text.charAt(i))) {
+      i++;
+    }
+    boolean typed = i > type;
+    int typeEnd = i;
+    if (typed && i < end && text.charAt(i) == '(') {
+      while (i < end && text.charAt(i) != ')' && text.charAt(i) != '\n') {
+        i++;
+      }
+      typed = i < end && text.charAt(i++) == ')';
+    }
+    boolean breaking = typed && i < end && text.charAt(i) == '!';
+    if (breaking) {
+      i++;
+    }
+    if (typed && i < end && text.charAt(i) == ':') {
+      if (breaking) {
+        return Change.MAJOR;
+      } else if (equalsIgnoreCase(text, type, typeEnd, "feat")) {
+        change = Change.MINOR;
+      }
+    }
+
+    // body and footers, only the breaking change footer matters
+    i = indexOf(text, '\n', i, end);
+    while (i < end) {
+      i++;
+      if (startsWith(text, i, end, "BREAKING CHANGE:")
+          || startsWith(text, i, end, "BREAKING-CHANGE:")) {
+        return Change.MAJOR;
+      }
+      i = indexOf(text, '\n', i, end);
+    }
+    return change;
+  }
+
+  /** the position of {@code c} or {@code end} */
+  private static int indexOf(CharSequence text, char c, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i) == c) {
+        return i;
+      }
+    }
+    return end;
+  }
+
+  private static boolean startsWith(CharSequence text, int start, int end, String prefix) {
+    if (end - start < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (text.charAt(start + i) != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean equalsIgnoreCase(CharSequence text, int start, int end, String word) {
+    if (end - start != word.length()) {
+      return false;
+    }
+    for (int i = 0; i < word.length(); i++) {
+      if (Character.toLowerCase(text.charAt(start + i)) != word.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
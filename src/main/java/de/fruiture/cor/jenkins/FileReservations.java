@@ -0,0 +1,142 @@
+package de.fruiture.cor.jenkins;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reservations shared by the builds on one machine, one small file per scope in a directory. Files
+ * are locked while they are updated, like the {@link VersionCache}.
+ *
+ * <p>Reservations of builds that died without releasing them expire after a timeout.
+ */
+public final class FileReservations implements VersionReservations, Serializable {
+  private static final long serialVersionUID = 1L;
+
+  public static final long DEFAULT_TIMEOUT_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+  /** file locks are held by the JVM, so threads need their own lock */
+  private static final ConcurrentMap<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+  private final String directory;
+  private final long timeoutMillis;
+
+  public FileReservations(Path directory, long timeoutMillis) {
+    if (timeoutMillis <= 0) {
+      throw new IllegalArgumentException("timeout must be positive: " + timeoutMillis);
+    }
+    this.directory = directory.toAbsolutePath().normalize().toString();
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  public FileReservations(Path directory) {
+    this(directory, DEFAULT_TIMEOUT_MILLIS);
+  }
+
+  @Override
+  public Version reserve(String scope, Version candidate, UnaryOperator<Version> successor) {
+    return update(
+        scope,
+        reserved -> {
+          Version version = candidate;
+          while (reserved.containsKey(version.toString())) {
+            version = successor.apply(version);
+          }
+          reserved.put(version.toString(), System.currentTimeMillis());
+          return version;
+        });
+  }
+
+  @Override
+  public void release(String scope, Version version) {
+    update(scope, reserved -> reserved.remove(version.toString()));
+  }
+
+  /** the file of a scope, named after its hash since scopes may contain anything */
+  Path file(String scope) {
+    try {
+      byte[] hash =
+          MessageDigest.getInstance("SHA-256").digest(scope.getBytes(StandardCharsets.UTF_8));
+      return Paths.get(directory, GitObjects.hex(hash).substring(0, 32) + ".reserved");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private <T> T update(String scope, Function<Map<String, Long>, T> update) {
+    Path file = file(scope);
+    ReentrantLock lock = LOCKS.computeIfAbsent(file, f -> new ReentrantLock());
+    lock.lock();
+    try {
+      Files.createDirectories(file.getParent());
+      try (FileChannel channel =
+          FileChannel.open(
+              file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        // released when the channel is closed
+        channel.lock();
+        Map<String, Long> reserved = read(channel);
+        T result = update.apply(reserved);
+        write(channel, reserved);
+        return result;
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** the unexpired reservations with the time they were made */
+  private Map<String, Long> read(FileChannel channel) throws IOException {
+    ByteBuffer bytes = ByteBuffer.allocate((int) channel.size());
+    while (bytes.hasRemaining() && channel.read(bytes, bytes.position()) >= 0) {}
+    bytes.flip();
+
+    long expired = System.currentTimeMillis() - timeoutMillis;
+    Map<String, Long> reserved = new LinkedHashMap<>();
+    for (String line : StandardCharsets.UTF_8.decode(bytes).toString().split("\n")) {
+      int tab = line.indexOf('\t');
+      if (tab < 0) {
+        continue;
+      }
+      try {
+        long time = Long.parseLong(line.substring(tab + 1));
+        if (time > expired) {
+          reserved.put(line.substring(0, tab), time);
+        }
+      } catch (NumberFormatException e) {
+        // damaged, ignore the line
+      }
+    }
+    return reserved;
+  }
+
+  private static void write(FileChannel channel, Map<String, Long> reserved) throws IOException {
+    StringBuilder text = new StringBuilder();
+    for (Map.Entry<String, Long> e : reserved.entrySet()) {
+      text.append(e.getKey()).append('\t').append(e.getValue()).append('\n');
+    }
+    ByteBuffer bytes = StandardCharsets.UTF_8.encode(text.toString());
+    channel.truncate(0);
+    while (bytes.hasRemaining()) {
+      channel.write(bytes, bytes.position());
+    }
+  }
+}
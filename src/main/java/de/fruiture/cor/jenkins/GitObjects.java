@@ -0,0 +1,381 @@
+package de.fruiture.cor.jenkins;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads objects from loose files and version 2 pack indexes of a repository and its alternates.
+ *
+ * <p>Only what is needed to walk the history is supported: objects are inflated completely and
+ * deltas are resolved without caching. Pack indexes are read into memory, the packs are read
+ * through channels that {@link #close()} closes.
+ */
+final class GitObjects implements Closeable {
+
+  static final int COMMIT = 1;
+  static final int TAG = 4;
+
+  private static final int OFS_DELTA = 6;
+  private static final int REF_DELTA = 7;
+
+  /** Type and content of an object */
+  static final class RawObject {
+    final int type;
+    final byte[] data;
+
+    RawObject(int type, byte[] data) {
+      this.type = type;
+      this.data = data;
+    }
+  }
+
+  private final int idLength;
+  private final List<Path> directories = new ArrayList<>();
+  private final List<Pack> packs = new ArrayList<>();
+
+  /** @param directory the {@code objects} directory */
+  GitObjects(Path directory, int idLength) throws IOException {
+    this.idLength = idLength;
+    try {
+      add(directory, 0);
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  private void add(Path directory, int depth) throws IOException {
+    if (depth > 5 || directories.contains(directory) || !Files.isDirectory(directory)) {
+      return;
+    }
+    directories.add(directory);
+
+    Path packDirectory = directory.resolve("pack");
+    if (Files.isDirectory(packDirectory)) {
+      try (DirectoryStream<Path> indexes = Files.newDirectoryStream(packDirectory, "*.idx")) {
+        for (Path index : indexes) {
+          String name = index.getFileName().toString();
+          Path pack = packDirectory.resolve(name.substring(0, name.length() - 4) + ".pack");
+          if (Files.isRegularFile(pack)) {
+            packs.add(new Pack(index, pack));
+          }
+        }
+      }
+    }
+
+    Path alternates = directory.resolve("info/alternates");
+    if (Files.isRegularFile(alternates)) {
+      for (String line : Files.readAllLines(alternates, StandardCharsets.UTF_8)) {
+        if (!line.isEmpty() && !line.startsWith("#")) {
+          add(directory.resolve(line.trim()).normalize(), depth + 1);
+        }
+      }
+    }
+  }
+
+  int idLength() {
+    return idLength;
+  }
+
+  /** the object or null if it is not in the repository */
+  RawObject read(byte[] id) throws IOException {
+    for (Pack pack : packs) {
+      long offset = pack.find(id);
+      if (offset >= 0) {
+        return pack.read(offset);
+      }
+    }
+
+    String hex = hex(id);
+    for (Path directory : directories) {
+      Path loose = directory.resolve(hex.substring(0, 2)).resolve(hex.substring(2));
+      if (Files.isRegularFile(loose)) {
+        return loose(Files.readAllBytes(loose));
+      }
+    }
+    return null;
+  }
+
+  private static RawObject loose(byte[] compressed) throws IOException {
+    ByteBuffer input = ByteBuffer.wrap(compressed);
+    byte[] raw =
+        inflate(
+            buffer -> {
+              int n = Math.min(buffer.length, input.remaining());
+              input.get(buffer, 0, n);
+              return n;
+            },
+            -1);
+    int space = indexOf(raw, (byte) ' ', 0);
+    int nul = indexOf(raw, (byte) 0, 0);
+    if (space < 0 || nul < space) {
+      throw new IOException("corrupt loose object");
+    }
+    String type = new String(raw, 0, space, StandardCharsets.US_ASCII);
+    int code;
+    if (type.equals("commit")) {
+      code = COMMIT;
+    } else if (type.equals("tree")) {
+      code = 2;
+    } else if (type.equals("blob")) {
+      code = 3;
+    } else if (type.equals("tag")) {
+      code = TAG;
+    } else {
+      throw new IOException("unknown object type: " + type);
+    }
+    byte[] data = new byte[raw.length - nul - 1];
+    System.arraycopy(raw, nul + 1, data, 0, data.length);
+    return new RawObject(code, data);
+  }
+
+  static int indexOf(byte[] data, byte b, int from) {
+    for (int i = from; i < data.length; i++) {
+      if (data[i] == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /** source of compressed data */
+  private interface Input {
+    /** fills the start of the buffer and returns the number of bytes, or 0 or -1 at the end */
+    int read(byte[] buffer) throws IOException;
+  }
+
+  /** inflates a zlib stream, which must have {@code size} bytes unless that is -1 */
+  private static byte[] inflate(Input input, int size) throws IOException {
+    Inflater inflater = new Inflater();
+    try {
+      ByteArrayOutputStream output = new ByteArrayOutputStream(size >= 0 ? size : 256);
+      byte[] in = new byte[Math.min(8192, Math.max(64, size + 64))];
+      byte[] out = new byte[8192];
+      while (!inflater.finished()) {
+        if (inflater.needsInput()) {
+          int n = input.read(in);
+          if (n <= 0) {
+            throw new IOException("truncated object");
+          }
+          inflater.setInput(in, 0, n);
+        }
+        int n = inflater.inflate(out);
+        if (n == 0 && !inflater.finished() && !inflater.needsInput()) {
+          throw new IOException("corrupt object");
+        }
+        output.write(out, 0, n);
+      }
+      byte[] data = output.toByteArray();
+      if (size >= 0 && data.length != size) {
+        throw new IOException("object has unexpected size");
+      }
+      return data;
+    } catch (DataFormatException e) {
+      throw new IOException("corrupt object", e);
+    } finally {
+      inflater.end();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (Pack pack : packs) {
+      pack.channel.close();
+    }
+  }
+
+  static byte[] id(String hex) {
+    byte[] id = new byte[hex.length() / 2];
+    for (int i = 0; i < id.length; i++) {
+      id[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+    }
+    return id;
+  }
+
+  static String hex(byte[] id) {
+    StringBuilder hex = new StringBuilder(id.length * 2);
+    for (byte b : id) {
+      hex.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+    }
+    return hex.toString();
+  }
+
+  /** compares {@code buffer[at, at + key.length)} with {@code key} as unsigned bytes */
+  static int compare(ByteBuffer buffer, int at, byte[] key) {
+    for (int i = 0; i < key.length; i++) {
+      int result = Integer.compare(buffer.get(at + i) & 0xff, key[i] & 0xff);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  private final class Pack {
+    private final ByteBuffer index;
+    private final int count;
+    private final FileChannel channel;
+
+    Pack(Path index, Path pack) throws IOException {
+      this.index = ByteBuffer.wrap(Files.readAllBytes(index));
+      if (this.index.getInt(0) != 0xff744f63 || this.index.getInt(4) != 2) {
+        throw new IOException("unsupported pack index: " + index);
+      }
+      this.count = this.index.getInt(8 + 255 * 4);
+      this.channel = FileChannel.open(pack, StandardOpenOption.READ);
+    }
+
+    /** offset of the object in the pack or -1 */
+    long find(byte[] id) {
+      int first = id[0] & 0xff;
+      int low = first == 0 ? 0 : index.getInt(8 + (first - 1) * 4);
+      int high = index.getInt(8 + first * 4);
+      int ids = 8 + 256 * 4;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        int result = compare(index, ids + middle * idLength, id);
+        if (result < 0) {
+          low = middle + 1;
+        } else if (result > 0) {
+          high = middle;
+        } else {
+          int offsets = ids + count * (idLength + 4);
+          int offset = index.getInt(offsets + middle * 4);
+          if (offset >= 0) {
+            return offset;
+          }
+          return index.getLong(offsets + count * 4 + (offset & Integer.MAX_VALUE) * 8);
+        }
+      }
+      return -1;
+    }
+
+    RawObject read(long offset) throws IOException {
+      ByteBuffer header = ByteBuffer.allocate(32 + idLength);
+      channel.read(header, offset);
+      header.flip();
+
+      int b = header.get() & 0xff;
+      int type = (b >> 4) & 7;
+      long size = b & 15;
+      for (int shift = 4; (b & 0x80) != 0; shift += 7) {
+        b = header.get() & 0xff;
+        size |= (long) (b & 0x7f) << shift;
+      }
+      if (size > Integer.MAX_VALUE - 8) {
+        throw new IOException("object too large");
+      }
+
+      if (type == OFS_DELTA) {
+        b = header.get() & 0xff;
+        long distance = b & 0x7f;
+        while ((b & 0x80) != 0) {
+          b = header.get() & 0xff;
+          distance = ((distance + 1) << 7) | (b & 0x7f);
+        }
+        RawObject base = read(offset - distance);
+        byte[] delta = inflate(offset + header.position(), (int) size);
+        return new RawObject(base.type, patch(base.data, delta));
+      } else if (type == REF_DELTA) {
+        byte[] baseId = new byte[idLength];
+        header.get(baseId);
+        RawObject base = GitObjects.this.read(baseId);
+        if (base == null) {
+          throw new IOException("missing delta base " + hex(baseId));
+        }
+        byte[] delta = inflate(offset + header.position(), (int) size);
+        return new RawObject(base.type, patch(base.data, delta));
+      } else if (type >= COMMIT && type <= TAG) {
+        return new RawObject(type, inflate(offset + header.position(), (int) size));
+      }
+      throw new IOException("unsupported pack entry type " + type);
+    }
+
+    private byte[] inflate(long position, int size) throws IOException {
+      long[] next = {position};
+      return GitObjects.inflate(
+          buffer -> {
+            int n = channel.read(ByteBuffer.wrap(buffer), next[0]);
+            next[0] += Math.max(0, n);
+            return n;
+          },
+          size);
+    }
+  }
+
+  /** Applies a git delta to its base. */
+  static byte[] patch(byte[] base, byte[] delta) throws IOException {
+    int[] at = {0};
+    long baseSize = varint(delta, at);
+    long resultSize = varint(delta, at);
+    if (baseSize != base.length || resultSize > Integer.MAX_VALUE - 8) {
+      throw new IOException("delta does not match its base");
+    }
+
+    byte[] result = new byte[(int) resultSize];
+    int out = 0;
+    int i = at[0];
+    while (i < delta.length) {
+      int command = delta[i++] & 0xff;
+      if ((command & 0x80) != 0) {
+        long copyOffset = 0;
+        int copySize = 0;
+        for (int bit = 0; bit < 4; bit++) {
+          if ((command & (1 << bit)) != 0) {
+            copyOffset |= (long) (delta[i++] & 0xff) << (8 * bit);
+          }
+        }
+        for (int bit = 0; bit < 3; bit++) {
+          if ((command & (0x10 << bit)) != 0) {
+            copySize |= (delta[i++] & 0xff) << (8 * bit);
+          }
+        }
+        if (copySize == 0) {
+          copySize = 0x10000;
+        }
+        if (copyOffset + copySize > base.length || out + copySize > result.length) {
+          throw new IOException("corrupt delta");
+        }
+        System.arraycopy(base, (int) copyOffset, result, out, copySize);
+        out += copySize;
+      } else if (command != 0) {
+        if (i + command > delta.length || out + command > result.length) {
+          throw new IOException("corrupt delta");
+        }
+        System.arraycopy(delta, i, result, out, command);
+        i += command;
+        out += command;
+      } else {
+        throw new IOException("corrupt delta");
+      }
+    }
+    if (out != result.length) {
+      throw new IOException("corrupt delta");
+    }
+    return result;
+  }
+
+  private static long varint(byte[] data, int[] at) {
+    long value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = data[at[0]++] & 0xff;
+      value |= (long) (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+}
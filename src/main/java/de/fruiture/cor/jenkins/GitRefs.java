@@ -0,0 +1,373 @@
+package de.fruiture.cor.jenkins;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Lists the tags of a repository by reading {@code packed-refs} and the loose refs below {@code
+ * refs/tags} directly, without starting {@code git}.
+ *
+ * <p>Of a sorted {@code packed-refs} file, only the range of the requested prefix is visited, found
+ * by binary search. The file is read rather than memory-mapped, because a mapping would keep it
+ * locked on Windows until collected and {@code git pack-refs} or {@code git gc} could not replace
+ * it.
+ */
+final class GitRefs {
+
+  private static final String TAGS = "refs/tags/";
+  private static final byte[] SORTED = " sorted ".getBytes(StandardCharsets.US_ASCII);
+
+  private final Path gitDir;
+  private final Path commonDir;
+
+  /** @param repository a working tree, a linked worktree or a bare repository */
+  GitRefs(Path repository) throws IOException {
+    this.gitDir = gitDir(repository);
+    this.commonDir = commonDir(gitDir);
+    if (Files.isDirectory(commonDir.resolve("reftable"))) {
+      throw new IOException("reftable ref storage is not supported: " + commonDir);
+    }
+  }
+
+  private static Path gitDir(Path repository) throws IOException {
+    Path dotGit = repository.resolve(".git");
+    if (Files.isDirectory(dotGit)) {
+      return dotGit;
+    } else if (Files.isRegularFile(dotGit)) {
+      String content = new String(Files.readAllBytes(dotGit), StandardCharsets.UTF_8).trim();
+      if (!content.startsWith("gitdir:")) {
+        throw new IOException("not a git directory reference: " + dotGit);
+      }
+      return repository.resolve(content.substring("gitdir:".length()).trim()).normalize();
+    } else if (Files.isRegularFile(repository.resolve("HEAD"))) {
+      return repository;
+    }
+    throw new IOException("not a git repository: " + repository);
+  }
+
+  private static Path commonDir(Path gitDir) throws IOException {
+    Path reference = gitDir.resolve("commondir");
+    if (!Files.isRegularFile(reference)) {
+      return gitDir;
+    }
+    String content = new String(Files.readAllBytes(reference), StandardCharsets.UTF_8).trim();
+    return gitDir.resolve(content).normalize();
+  }
+
+  Path gitDir() {
+    return gitDir;
+  }
+
+  Path commonDir() {
+    return commonDir;
+  }
+
+  /** Receives a ref name and, if requested, the object id it points to. */
+  interface Sink {
+    void ref(CharSequence name, String objectId) throws IOException;
+  }
+
+  /**
+   * Reports the name of every tag starting with {@code prefix}, without {@code refs/tags/}. The
+   * sequence is only valid during the call. Tags that are both packed and loose are reported twice.
+   */
+  void tags(String prefix, Consumer<CharSequence> tags) throws IOException {
+    tags(prefix, false, (name, objectId) -> tags.accept(name));
+  }
+
+  /**
+   * Like {@link #tags(String, Consumer)}, but also reports the object ids, preferring the peeled
+   * ids recorded in {@code packed-refs}. Loose refs shadow packed ones of the same name.
+   */
+  void tags(String prefix, Sink tags) throws IOException {
+    tags(prefix, true, tags);
+  }
+
+  private void tags(String prefix, boolean objectIds, Sink tags) throws IOException {
+    String start = TAGS + (prefix != null ? prefix : "");
+    Set<String> loose = objectIds ? new HashSet<>() : null;
+    looseTags(
+        start,
+        (name, objectId) -> {
+          if (loose != null) {
+            loose.add(name.toString());
+          }
+          tags.ref(name, objectId);
+        },
+        objectIds);
+    packed(
+        start,
+        TAGS.length(),
+        objectIds,
+        (name, objectId) -> {
+          if (loose == null || !loose.contains(name.toString())) {
+            tags.ref(name, objectId);
+          }
+        });
+  }
+
+  /**
+   * The object id {@code ref} points to, following symbolic refs, or null if it does not exist.
+   *
+   * @param ref a full ref name like {@code refs/heads/master} or {@code HEAD}
+   */
+  String resolve(String ref) throws IOException {
+    String name = ref;
+    for (int depth = 0; depth < 5; depth++) {
+      Path file = (perWorktree(name) ? gitDir : commonDir).resolve(name);
+      String target;
+      if (Files.isRegularFile(file)) {
+        target = new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim();
+      } else {
+        String[] packed = new String[1];
+        String wanted = name;
+        packed(
+            name,
+            0,
+            true,
+            (found, objectId) -> {
+              if (found.toString().equals(wanted)) {
+                packed[0] = objectId;
+              }
+            });
+        return packed[0];
+      }
+
+      if (!target.startsWith("ref:")) {
+        return target;
+      }
+      name = target.substring("ref:".length()).trim();
+    }
+    throw new IOException("too many levels of symbolic refs: " + ref);
+  }
+
+  private static boolean perWorktree(String ref) {
+    return !ref.startsWith("refs/")
+        || ref.startsWith("refs/worktree/")
+        || ref.startsWith("refs/bisect/")
+        || ref.startsWith("refs/rewritten/");
+  }
+
+  /**
+   * Reports the packed refs starting with {@code start}, their names without the first {@code skip}
+   * characters.
+   */
+  private void packed(String start, int skip, boolean objectIds, Sink refs) throws IOException {
+    ByteBuffer packed;
+    try {
+      packed = ByteBuffer.wrap(Files.readAllBytes(commonDir.resolve("packed-refs")));
+    } catch (NoSuchFileException e) {
+      return;
+    }
+
+    byte[] key = start.getBytes(StandardCharsets.UTF_8);
+    int end = packed.limit();
+    int first = 0;
+    boolean sorted = false;
+    if (end > 0 && packed.get(0) == '#') {
+      first = nextLine(packed, 0, end);
+      sorted = contains(packed, 0, first, SORTED);
+    }
+    int record = sorted ? lowerBound(packed, first, end, key) : first;
+
+    Name name = new Name(packed);
+    for (; record < end; record = nextLine(packed, record, end)) {
+      byte kind = packed.get(record);
+      if (kind == '^' || kind == '#') {
+        continue;
+      }
+      int nameStart = nameStart(packed, record, end);
+      int nameEnd = lineEnd(packed, nameStart, end);
+      if (startsWith(packed, nameStart, nameEnd, key)) {
+        String objectId = null;
+        if (objectIds) {
+          int next = nextLine(packed, record, end);
+          objectId =
+              next < end && packed.get(next) == '^'
+                  ? ascii(packed, next + 1, lineEnd(packed, next, end))
+                  : ascii(packed, record, nameStart - 1);
+        }
+        refs.ref(name.of(nameStart + skip, nameEnd), objectId);
+      } else if (sorted && compare(packed, nameStart, nameEnd, key) > 0) {
+        return;
+      }
+    }
+  }
+
+  private static String ascii(ByteBuffer buffer, int from, int to) {
+    char[] chars = new char[Math.max(0, to - from)];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = (char) buffer.get(from + i);
+    }
+    return new String(chars);
+  }
+
+  /** the first record in {@code [from, to)} whose name is not less than {@code key} */
+  private static int lowerBound(ByteBuffer packed, int from, int to, byte[] key) {
+    int low = from;
+    int high = to;
+    while (low < high) {
+      int middle = lineStart(packed, low, low + (high - low) / 2);
+      if (packed.get(middle) == '^') {
+        // the peeled object id belongs to the record before, which is at or after low
+        middle = lineStart(packed, low, middle - 1);
+      }
+      int nameStart = nameStart(packed, middle, to);
+      if (compare(packed, nameStart, lineEnd(packed, nameStart, to), key) < 0) {
+        low = nextLine(packed, middle, to);
+        if (low < to && packed.get(low) == '^') {
+          low = nextLine(packed, low, to);
+        }
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  /** start of the ref name after the object id, or the end of the line if there is none */
+  private static int nameStart(ByteBuffer buffer, int record, int to) {
+    int end = lineEnd(buffer, record, to);
+    for (int i = record; i < end; i++) {
+      if (buffer.get(i) == ' ') {
+        return i + 1;
+      }
+    }
+    return end;
+  }
+
+  private static int lineStart(ByteBuffer buffer, int from, int at) {
+    int i = at;
+    while (i > from && buffer.get(i - 1) != '\n') {
+      i--;
+    }
+    return i;
+  }
+
+  private static int lineEnd(ByteBuffer buffer, int at, int to) {
+    int i = at;
+    while (i < to && buffer.get(i) != '\n' && buffer.get(i) != '\r') {
+      i++;
+    }
+    return i;
+  }
+
+  private static int nextLine(ByteBuffer buffer, int at, int to) {
+    int i = at;
+    while (i < to && buffer.get(i) != '\n') {
+      i++;
+    }
+    return Math.min(i + 1, to);
+  }
+
+  /** compares {@code buffer[from, to)} with {@code key} like {@code strcmp} */
+  private static int compare(ByteBuffer buffer, int from, int to, byte[] key) {
+    int length = Math.min(to - from, key.length);
+    for (int i = 0; i < length; i++) {
+      int result = Integer.compare(buffer.get(from + i) & 0xff, key[i] & 0xff);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return Integer.compare(to - from, key.length);
+  }
+
+  private static boolean startsWith(ByteBuffer buffer, int from, int to, byte[] key) {
+    return to - from >= key.length && compare(buffer, from, from + key.length, key) == 0;
+  }
+
+  private static boolean contains(ByteBuffer buffer, int from, int to, byte[] key) {
+    for (int i = from; i + key.length <= to; i++) {
+      if (startsWith(buffer, i, to, key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void looseTags(String start, Sink tags, boolean objectIds) throws IOException {
+    Path directory = commonDir.resolve(TAGS);
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+    String prefix = start.substring(TAGS.length());
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+      for (Path entry : entries) {
+        String name = entry.getFileName().toString();
+        if (name.startsWith(prefix)) {
+          looseTags(entry, name, tags, objectIds);
+        }
+      }
+    }
+  }
+
+  private void looseTags(Path entry, String name, Sink tags, boolean objectIds) throws IOException {
+    if (Files.isDirectory(entry)) {
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(entry)) {
+        for (Path child : entries) {
+          looseTags(child, name + "/" + child.getFileName(), tags, objectIds);
+        }
+      }
+    } else if (!name.endsWith(".lock")) {
+      tags.ref(name, objectIds ? resolve(TAGS + name) : null);
+    }
+  }
+
+  /** reusable view of a name in the file, decoded only if it is not plain ASCII */
+  private static final class Name implements CharSequence {
+    private final ByteBuffer buffer;
+    private int from;
+    private int to;
+
+    Name(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    CharSequence of(int from, int to) {
+      for (int i = from; i < to; i++) {
+        if (buffer.get(i) < 0) {
+          byte[] bytes = new byte[to - from];
+          for (int k = 0; k < bytes.length; k++) {
+            bytes[k] = buffer.get(from + k);
+          }
+          return new String(bytes, StandardCharsets.UTF_8);
+        }
+      }
+      this.from = from;
+      this.to = to;
+      return this;
+    }
+
+    @Override
+    public int length() {
+      return to - from;
+    }
+
+    @Override
+    public char charAt(int index) {
+      return (char) buffer.get(from + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return toString().substring(start, end);
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder text = new StringBuilder(length());
+      for (int i = from; i < to; i++) {
+        text.append((char) buffer.get(i));
+      }
+      return text.toString();
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package de.fruiture.cor.jenkins;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+/**
+ * Calculates the version a {@link VersionCalculator} would have calculated at every commit of a
+ * first-parent history, in a single pass from the first commit on.
+ *
+ * <p>Only the commits of that history and their tags are seen. A merge commit counts with its own
+ * message, but the commits and tags it merges from other branches do not, while the calculator
+ * would see them in {@code git log} and {@code git tag --merged}. So the versions agree as long as
+ * merged branches have no tags and no messages with a higher change level than a patch.
+ *
+ * <p>The tags of each commit are added to the calculator as they come. A new reference tag on a
+ * commit starts the change level over, otherwise the commit's message raises it, so a step takes
+ * time proportional to the message and to the logarithm of the number of tags. Like in the log of
+ * {@link VersionCalculator#getGitLogCommand()}, the messages are the subjects of the commits, or
+ * their full messages for Conventional Commits. Each message is scanned on its own.
+ */
+public final class HistoryReplay {
+
+  static final char FIELD_SEPARATOR = '\u001f';
+
+  private final VersionCalculator calculator;
+
+  /** @param calculator configured, but without any tags, messages, cache or reservations */
+  public HistoryReplay(VersionCalculator calculator) {
+    calculator.startReplay();
+    this.calculator = calculator;
+  }
+
+  /** Lists the first-parent history of {@code HEAD} for {@link #replay}, oldest commit first. */
+  public String getGitLogCommand() {
+    return "log --first-parent --reverse --pretty=format:%x1e%H%x1f%D%x1f"
+        + (calculator.isConventionalCommits() ? "%B" : "%s")
+        + " HEAD";
+  }
+
+  /**
+   * Advances to the next commit.
+   *
+   * @param tags the names of the tags pointing at the commit
+   * @return the next version with the commit as {@code HEAD}
+   */
+  public String commit(String id, String message, Collection<String> tags) {
+    boolean referenced = false;
+    if (!tags.isEmpty()) {
+      Optional<String> reference = calculator.getReferenceTag();
+      calculator.applyDelta(tags, Collections.emptySet());
+      // only a tag of this commit can become the reference
+      referenced = !calculator.getReferenceTag().equals(reference);
+    }
+
+    if (referenced) {
+      calculator.resetChange();
+    } else if (calculator.isConventionalCommits()) {
+      calculator.messages(ConventionalCommits.RECORD_SEPARATOR + id + "\n" + message);
+    } else {
+      calculator.messages(id + " " + message);
+    }
+    return calculator.getNextVersion();
+  }
+
+  /**
+   * Replays the output of {@link #getGitLogCommand()} and passes every commit with its version to
+   * {@code versions}. Only the commit being read is buffered.
+   */
+  public void replay(Reader log, BiConsumer<String, String> versions) throws IOException {
+    char[] buffer = new char[VersionCalculator.MESSAGES_BUFFER_SIZE];
+    StringBuilder record = new StringBuilder();
+    int n;
+    while ((n = log.read(buffer)) >= 0) {
+      for (int i = 0; i < n; i++) {
+        if (buffer[i] == ConventionalCommits.RECORD_SEPARATOR) {
+          record(record, versions);
+          record.setLength(0);
+        } else {
+          record.append(buffer[i]);
+        }
+      }
+    }
+    record(record, versions);
+  }
+
+  private void record(StringBuilder record, BiConsumer<String, String> versions) {
+    int refs = record.indexOf(String.valueOf(FIELD_SEPARATOR));
+    int message = refs < 0 ? -1 : record.indexOf(String.valueOf(FIELD_SEPARATOR), refs + 1);
+    if (message < 0) {
+      return;
+    }
+
+    List<String> tags = new ArrayList<>();
+    for (String ref : record.substring(refs + 1, message).split(", ")) {
+      if (ref.startsWith("tag: ")) {
+        tags.add(ref.substring("tag: ".length()));
+      }
+    }
+    // the line break between two commits
+    int end = record.length();
+    if (end > message + 1 && record.charAt(end - 1) == '\n') {
+      end--;
+    }
+
+    String id = record.substring(0, refs);
+    versions.accept(id, commit(id, record.substring(message + 1, end), tags));
+  }
+}
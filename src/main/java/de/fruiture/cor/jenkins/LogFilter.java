@@ -0,0 +1,247 @@
+package de.fruiture.cor.jenkins;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Lets git select the commits whose {@code --pretty=oneline} line can contain a change keyword, so
+ * that only those are transferred and scanned.
+ *
+ * <p>A keyword is only translated into a {@code --grep} extended regular expression if every match
+ * of it in the log lies within a single subject: it must consist of characters, escaped
+ * meta-characters, simple classes, groups, alternatives and quantifiers that cannot match any white
+ * space, and every match must contain a character that does not occur in a commit hash. The
+ * selected lines then hold all matches of the complete log, and scanning them gives the same change
+ * level.
+ */
+final class LogFilter {
+
+  private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+
+  private LogFilter() {}
+
+  /**
+   * The arguments of the git log commands whose outputs, joined by line breaks, have the same
+   * change level as the full log of {@code range}: one that lists a commit if there is any, and one
+   * for each case sensitivity of the keywords. Null if a keyword cannot be translated.
+   */
+  static List<List<String>> commands(String range, List<Pattern> minor, List<Pattern> major) {
+    List<String> sensitive = new ArrayList<>();
+    List<String> insensitive = new ArrayList<>();
+    List<Pattern> triggers = new ArrayList<>(major);
+    triggers.addAll(minor);
+    for (Pattern trigger : triggers) {
+      String expression = extended(trigger);
+      if (expression == null) {
+        return null;
+      }
+      ((trigger.flags() & Pattern.CASE_INSENSITIVE) != 0 ? insensitive : sensitive).add(expression);
+    }
+
+    List<List<String>> commands = new ArrayList<>();
+    commands.add(Arrays.asList("log", "--pretty=oneline", "--max-count=1", range));
+    if (!sensitive.isEmpty()) {
+      commands.add(grep(sensitive, range, "-E"));
+    }
+    if (!insensitive.isEmpty()) {
+      commands.add(grep(insensitive, range, "-E", "-i"));
+    }
+    return commands;
+  }
+
+  private static List<String> grep(List<String> expressions, String range, String... options) {
+    List<String> command = new ArrayList<>(Arrays.asList("log", "--pretty=oneline"));
+    command.addAll(Arrays.asList(options));
+    for (String expression : expressions) {
+      command.add("--grep=" + expression);
+    }
+    command.add(range);
+    return command;
+  }
+
+  /** the POSIX extended regular expression for a keyword, or null if it cannot be translated */
+  static String extended(Pattern trigger) {
+    int flags = trigger.flags() & ~Pattern.CASE_INSENSITIVE;
+    String source = trigger.pattern();
+    if (flags == Pattern.LITERAL) {
+      StringBuilder expression = new StringBuilder();
+      boolean distinct = false;
+      for (int i = 0; i < source.length(); i++) {
+        char c = source.charAt(i);
+        if (!plain(c)) {
+          return null;
+        }
+        if (META_CHARACTERS.indexOf(c) >= 0) {
+          expression.append('\\');
+        }
+        expression.append(c);
+        distinct |= !hex(c);
+      }
+      return distinct ? expression.toString() : null;
+    } else if (flags != 0) {
+      return null;
+    }
+
+    Translation translation = new Translation(source);
+    boolean distinct = translation.alternatives();
+    return !translation.failed && translation.at == source.length() && distinct
+        ? translation.expression.toString()
+        : null;
+  }
+
+  /** printable ASCII, but no white space or quote */
+  private static boolean plain(char c) {
+    return c > ' ' && c < 127 && c != '\'';
+  }
+
+  /** could be part of a commit hash */
+  private static boolean hex(char c) {
+    return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+  }
+
+  /**
+   * Recursive descent over the supported subset of {@link Pattern}. Each method returns whether
+   * every match contains a character that is not in a commit hash.
+   */
+  private static final class Translation {
+    private final String source;
+    private final StringBuilder expression = new StringBuilder();
+    private int at;
+    private boolean failed;
+
+    Translation(String source) {
+      this.source = source;
+    }
+
+    boolean alternatives() {
+      boolean distinct = sequence();
+      while (!failed && peek('|')) {
+        at++;
+        expression.append('|');
+        distinct &= sequence();
+      }
+      return distinct;
+    }
+
+    private boolean sequence() {
+      boolean distinct = false;
+      while (!failed && at < source.length() && !peek('|') && !peek(')')) {
+        distinct |= quantified();
+      }
+      return distinct;
+    }
+
+    private boolean quantified() {
+      boolean distinct = atom();
+      if (failed || at == source.length()) {
+        return distinct;
+      }
+      char c = source.charAt(at);
+      if (c == '*' || c == '?') {
+        at++;
+        expression.append(c);
+        distinct = false;
+      } else if (c == '+') {
+        at++;
+        expression.append(c);
+      } else if (c == '{') {
+        int close = source.indexOf('}', at);
+        String bounds = close < 0 ? "" : source.substring(at + 1, close);
+        if (!bounds.matches("\\d{1,3}(,\\d{0,3})?")) {
+          return fail();
+        }
+        at = close + 1;
+        expression.append('{').append(bounds).append('}');
+        distinct &= Integer.parseInt(bounds.split(",")[0]) > 0;
+      } else {
+        return distinct;
+      }
+      // lazy and possessive quantifiers
+      if (peek('?') || peek('+')) {
+        return fail();
+      }
+      return distinct;
+    }
+
+    private boolean atom() {
+      char c = source.charAt(at++);
+      if (c == '(') {
+        if (source.startsWith("?:", at)) {
+          at += 2;
+        } else if (peek('?')) {
+          return fail();
+        }
+        expression.append('(');
+        boolean distinct = alternatives();
+        if (!peek(')')) {
+          return fail();
+        }
+        at++;
+        expression.append(')');
+        return distinct;
+      } else if (c == '[') {
+        return characterClass();
+      } else if (c == '\\') {
+        return escaped();
+      } else if (!plain(c) || META_CHARACTERS.indexOf(c) >= 0) {
+        // '.' matches blanks, anchors depend on the whole log
+        return fail();
+      }
+      expression.append(c);
+      return !hex(c);
+    }
+
+    private boolean escaped() {
+      if (at == source.length()) {
+        return fail();
+      }
+      char c = source.charAt(at++);
+      if (c == 'd') {
+        expression.append("[0-9]");
+        return false;
+      } else if (c == 'w') {
+        expression.append("[A-Za-z0-9_]");
+        return false;
+      } else if (META_CHARACTERS.indexOf(c) >= 0) {
+        expression.append('\\').append(c);
+        return true;
+      }
+      return fail();
+    }
+
+    /** letters, digits, '_' and ranges of them, not negated */
+    private boolean characterClass() {
+      expression.append('[');
+      boolean distinct = true;
+      int start = at;
+      while (at < source.length() && source.charAt(at) != ']') {
+        char c = source.charAt(at);
+        boolean range =
+            c == '-' && at > start && at + 1 < source.length() && source.charAt(at + 1) != ']';
+        if (!range && !(Character.isLetterOrDigit(c) && c < 127) && c != '_') {
+          return fail();
+        }
+        distinct &= !range && !hex(c);
+        expression.append(c);
+        at++;
+      }
+      if (at == start || at == source.length()) {
+        return fail();
+      }
+      at++;
+      expression.append(']');
+      return distinct;
+    }
+
+    private boolean peek(char c) {
+      return at < source.length() && source.charAt(at) == c;
+    }
+
+    private boolean fail() {
+      failed = true;
+      return false;
+    }
+  }
+}
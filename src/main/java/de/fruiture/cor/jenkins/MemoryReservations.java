@@ -0,0 +1,72 @@
+package de.fruiture.cor.jenkins;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Reservations of the builds in this JVM. Reserving does not block, concurrent builds race for a
+ * version and the losers move on to its successors.
+ *
+ * <p>Like {@link FileReservations}, reservations of builds that never released them expire after a
+ * timeout.
+ */
+public final class MemoryReservations implements VersionReservations, Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private static final MemoryReservations SHARED =
+      new MemoryReservations(FileReservations.DEFAULT_TIMEOUT_MILLIS);
+
+  // the time each version was reserved, per scope; the shared instance replaces deserialized ones
+  private final transient ConcurrentMap<String, ConcurrentMap<String, Long>> reserved =
+      new ConcurrentHashMap<>();
+
+  private final long timeoutMillis;
+
+  MemoryReservations(long timeoutMillis) {
+    if (timeoutMillis <= 0) {
+      throw new IllegalArgumentException("timeout must be positive: " + timeoutMillis);
+    }
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  MemoryReservations() {
+    this(FileReservations.DEFAULT_TIMEOUT_MILLIS);
+  }
+
+  /** the reservations of all calculators in this JVM */
+  public static MemoryReservations shared() {
+    return SHARED;
+  }
+
+  @Override
+  public Version reserve(String scope, Version candidate, UnaryOperator<Version> successor) {
+    ConcurrentMap<String, Long> versions =
+        reserved.computeIfAbsent(scope, s -> new ConcurrentHashMap<>());
+    long now = System.currentTimeMillis();
+    long expired = now - timeoutMillis;
+    versions.values().removeIf(time -> time <= expired);
+
+    Version version = candidate;
+    while (true) {
+      Long time = versions.putIfAbsent(version.toString(), now);
+      if (time == null || (time <= expired && versions.replace(version.toString(), time, now))) {
+        return version;
+      }
+      version = successor.apply(version);
+    }
+  }
+
+  @Override
+  public void release(String scope, Version version) {
+    ConcurrentMap<String, Long> versions = reserved.get(scope);
+    if (versions != null) {
+      versions.remove(version.toString());
+    }
+  }
+
+  private Object readResolve() {
+    return SHARED;
+  }
+}
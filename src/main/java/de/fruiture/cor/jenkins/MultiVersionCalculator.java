@@ -0,0 +1,444 @@
+package de.fruiture.cor.jenkins;
+
+import de.fruiture.cor.jenkins.VersioningStrategy.Change;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Calculates the versions of several modules of one repository, each with its own tag prefix, from
+ * a single list of tags and a single log.
+ *
+ * <p>Every line of the tags is routed through a trie to the modules whose prefix it starts with.
+ * The log contains the parents of every commit, so that the commits since each module's reference
+ * tag can be told apart in one pass.
+ */
+public class MultiVersionCalculator implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  /** like {@code --pretty=oneline}, the hash and subject are scanned */
+  private static final String LOG_FORMAT = "%x1e%H %P%x1f%D%n%H %s";
+
+  /** also the full message, if a module uses conventional commits */
+  private static final String CONVENTIONAL_LOG_FORMAT = LOG_FORMAT + "%n%B";
+
+  private static final char RECORD = '\u001e';
+  private static final char UNIT = '\u001f';
+
+  public static MultiVersionCalculator snapshot(String... prefixes) {
+    return new MultiVersionCalculator(
+        Arrays.stream(prefixes).map(VersionCalculator::snapshot).collect(Collectors.toList()));
+  }
+
+  public static MultiVersionCalculator release(String... prefixes) {
+    return new MultiVersionCalculator(
+        Arrays.stream(prefixes).map(VersionCalculator::release).collect(Collectors.toList()));
+  }
+
+  private final List<VersionCalculator> calculators;
+  private transient PrefixTrie trie;
+
+  /** the common ancestors of the reference tags, or null if unknown */
+  private List<String> mergeBases;
+
+  /** @param calculators one per module, each with a distinct prefix */
+  public MultiVersionCalculator(List<VersionCalculator> calculators) {
+    this.calculators = new ArrayList<>(calculators);
+    List<String> prefixes = getPrefixes();
+    for (int i = 0; i < prefixes.size(); i++) {
+      String prefix = prefixes.get(i);
+      if (prefix == null || prefix.isEmpty()) {
+        throw new IllegalArgumentException("every module needs a prefix");
+      } else if (prefixes.indexOf(prefix) != i) {
+        throw new IllegalArgumentException("duplicate prefix " + prefix);
+      }
+    }
+  }
+
+  public List<String> getPrefixes() {
+    return calculators.stream().map(VersionCalculator::getPrefix).collect(Collectors.toList());
+  }
+
+  /** the calculator of the module with the prefix, or null */
+  public VersionCalculator get(String prefix) {
+    return calculators.stream().filter(c -> c.getPrefix().equals(prefix)).findFirst().orElse(null);
+  }
+
+  public Map<String, Optional<String>> getReferenceTags() {
+    Map<String, Optional<String>> tags = new LinkedHashMap<>();
+    calculators.forEach(c -> tags.put(c.getPrefix(), c.getReferenceTag()));
+    return tags;
+  }
+
+  public Map<String, String> getNextVersions() {
+    Map<String, String> versions = new LinkedHashMap<>();
+    calculators.forEach(c -> versions.put(c.getPrefix(), c.getNextVersion()));
+    return versions;
+  }
+
+  public Map<String, String> getNextVersionTags() {
+    Map<String, String> tags = new LinkedHashMap<>();
+    calculators.forEach(c -> tags.put(c.getPrefix(), c.getNextVersionTag()));
+    return tags;
+  }
+
+  public void setTriggerMinorChange(List<?> triggerMinorChange) {
+    calculators.forEach(c -> c.setTriggerMinorChange(triggerMinorChange));
+  }
+
+  public void setTriggerMajorChange(List<?> triggerMajorChange) {
+    calculators.forEach(c -> c.setTriggerMajorChange(triggerMajorChange));
+  }
+
+  public String getGitFindTagsCommand() {
+    StringBuilder command = new StringBuilder("tag -l --merged HEAD");
+    for (String prefix : getPrefixes()) {
+      command.append(" '").append(prefix).append("*'");
+    }
+    return command.toString();
+  }
+
+  void tags(String foundGitTags) {
+    try {
+      tags(new StringReader(foundGitTags));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Reads the output of {@link #getGitFindTagsCommand()}, one tag per line. */
+  void tags(Reader foundGitTags) throws IOException {
+    BufferedReader reader =
+        foundGitTags instanceof BufferedReader
+            ? (BufferedReader) foundGitTags
+            : new BufferedReader(foundGitTags);
+    mergeBases = null;
+    PrefixTrie trie = trie();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      String tag = line;
+      trie.route(tag, i -> calculators.get(i).tags(tag, 0, tag.length()));
+    }
+  }
+
+  /**
+   * Finds the common ancestors of all reference tags, whose history every module has seen, to be
+   * passed to {@link #mergeBases(String)}. Null if a module has no reference tag yet.
+   */
+  public String getGitMergeBaseCommand() {
+    StringBuilder command = new StringBuilder("merge-base --all --octopus");
+    for (VersionCalculator calculator : calculators) {
+      Optional<String> reference = calculator.getReferenceTag();
+      if (!reference.isPresent()) {
+        return null;
+      }
+      command.append(" '").append(reference.get()).append('\'');
+    }
+    return command.toString();
+  }
+
+  /**
+   * Reads the output of {@link #getGitMergeBaseCommand()}, one commit per line, after the tags.
+   * {@link #getGitLogCommand()} then leaves out their history.
+   */
+  public void mergeBases(String foundMergeBases) {
+    mergeBases = new ArrayList<>();
+    for (String line : foundMergeBases.split("\n")) {
+      if (!line.trim().isEmpty()) {
+        mergeBases.add(line.trim());
+      }
+    }
+  }
+
+  /**
+   * Lists the commits since the oldest reference tags with their parents and tags. Commits that all
+   * modules have seen are left out if their common ancestors were passed to {@link
+   * #mergeBases(String)}, the result is the same without.
+   */
+  public String getGitLogCommand() {
+    return VersionCalculator.shellCommand(getGitLogArguments());
+  }
+
+  /** The arguments of {@link #getGitLogCommand()}, to run git without a shell. */
+  public List<String> getGitLogArguments() {
+    List<String> arguments =
+        new ArrayList<>(
+            Arrays.asList(
+                "log",
+                "--topo-order",
+                "--decorate-refs=refs/tags/",
+                "--format="
+                    + (calculators.stream().anyMatch(VersionCalculator::isConventionalCommits)
+                        ? CONVENTIONAL_LOG_FORMAT
+                        : LOG_FORMAT),
+                "HEAD"));
+    if (mergeBases != null && !mergeBases.isEmpty()) {
+      arguments.add("--not");
+      arguments.addAll(mergeBases);
+    }
+    return arguments;
+  }
+
+  public String getGitPushTagCommand() {
+    StringBuilder command = new StringBuilder("push origin");
+    calculators.forEach(c -> command.append(' ').append(c.getNextVersionTag()));
+    return command.toString();
+  }
+
+  public void messages(String log) {
+    try {
+      messages(new StringReader(log));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Reads the output of {@link #getGitLogCommand()}. Every commit counts for the modules whose
+   * reference tag it does not descend from, and each message is scanned once per distinct set of
+   * triggers. Modules that use conventional commits classify the full message of each commit, the
+   * others scan its hash and subject.
+   */
+  public void messages(Reader log) throws IOException {
+    int modules = calculators.size();
+    Map<String, Integer> moduleOfReference = new HashMap<>();
+    List<TriggerScanner> scanners = new ArrayList<>();
+    List<String> triggers = new ArrayList<>();
+    int[] scannerOf = new int[modules];
+    for (int i = 0; i < modules; i++) {
+      VersionCalculator calculator = calculators.get(i);
+      int module = i;
+      calculator.getReferenceTag().ifPresent(tag -> moduleOfReference.put(tag, module));
+      String key = triggers(calculator);
+      scannerOf[i] = triggers.indexOf(key);
+      if (scannerOf[i] < 0) {
+        scannerOf[i] = triggers.size();
+        triggers.add(key);
+        scanners.add(calculator.triggerScanner());
+      }
+    }
+
+    // modules whose reference descends from a commit, complete when it is read in topo order
+    Map<String, BitSet> seen = new HashMap<>();
+    Change[] changes = new Change[modules];
+    String[] changeCommits = new String[modules];
+    Change[] scanned = new Change[scanners.size()];
+
+    RecordReader records = new RecordReader(log);
+    StringBuilder record;
+    while ((record = records.next()) != null) {
+      int headerEnd = indexOf(record, '\n');
+      int unit = indexOf(record, UNIT);
+      if (unit >= headerEnd) {
+        continue;
+      }
+      String[] ids = record.substring(0, unit).trim().split(" ");
+      BitSet seenBy = seen.remove(ids[0]);
+      if (seenBy == null) {
+        seenBy = new BitSet(modules);
+      }
+      for (String decoration : record.substring(unit + 1, headerEnd).split(", ")) {
+        if (decoration.startsWith("tag: ")) {
+          Integer module = moduleOfReference.get(decoration.substring(5));
+          if (module != null) {
+            seenBy.set(module);
+          }
+        }
+      }
+
+      Arrays.fill(scanned, null);
+      int subjectStart = Math.min(headerEnd + 1, record.length());
+      int subjectEnd = indexOf(record, '\n', subjectStart);
+      CharSequence subject = record.subSequence(subjectStart, subjectEnd);
+      CharSequence message =
+          record.subSequence(Math.min(subjectEnd + 1, record.length()), record.length());
+      for (int i = seenBy.nextClearBit(0); i < modules; i = seenBy.nextClearBit(i + 1)) {
+        int s = scannerOf[i];
+        if (scanned[s] == null) {
+          scanned[s] =
+              calculators.get(i).isConventionalCommits()
+                  ? classify(scanners.get(s), message)
+                  : scan(scanners.get(s), subject);
+        }
+        if (scanned[s] != null && (changes[i] == null || scanned[s].compareTo(changes[i]) > 0)) {
+          changes[i] = scanned[s];
+          changeCommits[i] = ids[0];
+        }
+      }
+
+      if (!seenBy.isEmpty()) {
+        for (int p = 1; p < ids.length; p++) {
+          BitSet parent = seen.get(ids[p]);
+          if (parent == null) {
+            seen.put(ids[p], (BitSet) seenBy.clone());
+          } else {
+            parent.or(seenBy);
+          }
+        }
+      }
+    }
+
+    for (int i = 0; i < modules; i++) {
+      if (changes[i] == null) {
+        continue;
+      } else if (calculators.get(i).isConventionalCommits()) {
+        calculators.get(i).messages(changes[i], changeCommits[i]);
+      } else {
+        calculators.get(i).messages(changes[i]);
+      }
+    }
+  }
+
+  private static Change scan(TriggerScanner triggers, CharSequence subject) {
+    Change found = triggers.scan(subject);
+    return found == null ? Change.PATCH : found;
+  }
+
+  /** like {@link ConventionalCommits}, null if the message is blank and has no keyword */
+  private static Change classify(TriggerScanner triggers, CharSequence message) {
+    Change level = ConventionalCommits.classify(message);
+    if (level != Change.MAJOR) {
+      Change triggered = triggers.scan(message);
+      if (triggered != null && (level == null || triggered.compareTo(level) > 0)) {
+        level = triggered;
+      }
+    }
+    return level;
+  }
+
+  private static String triggers(VersionCalculator calculator) {
+    StringBuilder key = new StringBuilder().append(calculator.isConventionalCommits());
+    for (Pattern p : calculator.getTriggerMinorChange()) {
+      key.append(p.flags()).append(' ').append(p.pattern()).append(UNIT);
+    }
+    key.append(RECORD);
+    for (Pattern p : calculator.getTriggerMajorChange()) {
+      key.append(p.flags()).append(' ').append(p.pattern()).append(UNIT);
+    }
+    return key.toString();
+  }
+
+  private static int indexOf(CharSequence text, char c) {
+    return indexOf(text, c, 0);
+  }
+
+  private static int indexOf(CharSequence text, char c, int from) {
+    for (int i = from; i < text.length(); i++) {
+      if (text.charAt(i) == c) {
+        return i;
+      }
+    }
+    return text.length();
+  }
+
+  private PrefixTrie trie() {
+    if (trie == null) {
+      trie = new PrefixTrie(getPrefixes());
+    }
+    return trie;
+  }
+
+  /** Splits the log into the records started by {@link #RECORD}. */
+  private static final class RecordReader {
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+
+    RecordReader(Reader reader) {
+      this.reader = reader;
+    }
+
+    /** the next record without the separator and trailing line breaks, or null */
+    StringBuilder next() throws IOException {
+      StringBuilder record = null;
+      while (true) {
+        if (position == limit) {
+          limit = reader.read(buffer);
+          position = 0;
+          if (limit < 0) {
+            limit = 0;
+            return record == null ? null : trim(record);
+          }
+        }
+        char c = buffer[position];
+        if (c == RECORD && record != null) {
+          return trim(record);
+        }
+        position++;
+        if (c == RECORD) {
+          record = new StringBuilder();
+        } else if (record != null) {
+          record.append(c);
+        }
+      }
+    }
+
+    private static StringBuilder trim(StringBuilder record) {
+      int length = record.length();
+      while (length > 0
+          && (record.charAt(length - 1) == '\n' || record.charAt(length - 1) == '\r')) {
+        length--;
+      }
+      record.setLength(length);
+      return record;
+    }
+  }
+
+  /** Finds all prefixes a text starts with. */
+  private static final class PrefixTrie {
+    private final List<Map<Character, Integer>> children = new ArrayList<>();
+    private final List<Integer> module = new ArrayList<>();
+
+    PrefixTrie(List<String> prefixes) {
+      node();
+      for (int m = 0; m < prefixes.size(); m++) {
+        String prefix = prefixes.get(m);
+        int node = 0;
+        for (int i = 0; i < prefix.length(); i++) {
+          Integer next = children.get(node).get(prefix.charAt(i));
+          if (next == null) {
+            next = node();
+            children.get(node).put(prefix.charAt(i), next);
+          }
+          node = next;
+        }
+        module.set(node, m);
+      }
+    }
+
+    private int node() {
+      children.add(new HashMap<>());
+      module.add(null);
+      return children.size() - 1;
+    }
+
+    void route(CharSequence text, IntConsumer modules) {
+      int node = 0;
+      for (int i = 0; i < text.length(); i++) {
+        Integer next = children.get(node).get(text.charAt(i));
+        if (next == null) {
+          return;
+        }
+        node = next;
+        if (module.get(node) != null) {
+          modules.accept(module.get(node));
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,12 @@
+package de.fruiture.cor.jenkins;
+
+import java.util.Collection;
+
+/**
+ * Receives the tags that were created or deleted, for example from a listener for ref updates, see
+ * {@link VersionCalculator#tagListener()}.
+ */
+public interface TagListener {
+
+  void tagsChanged(Collection<String> added, Collection<String> removed);
+}
@@ -0,0 +1,266 @@
+package de.fruiture.cor.jenkins;
+
+import java.util.function.Consumer;
+
+/**
+ * Finds version tags in the output of git commands without regular expressions or exceptions.
+ *
+ * <p>{@link #scan} finds the same candidates as the pattern {@code prefix(\d+.\d+\.\d+\S*)} used
+ * with {@link java.util.regex.Matcher#find()}, and {@link #parse} accepts exactly the texts that
+ * {@link com.github.zafarkhaja.semver.Version#valueOf(String)} accepts.
+ */
+final class TagParser {
+
+  /** Receives the components of a parsed version, offsets are absolute positions in the text. */
+  interface Sink {
+    void version(
+        CharSequence text,
+        int start,
+        int end,
+        int major,
+        int minor,
+        int patch,
+        int preRelease,
+        int build);
+  }
+
+  private final String prefix;
+
+  TagParser(String prefix) {
+    this.prefix = prefix != null ? prefix : "";
+  }
+
+  /** Reports every valid version tag in {@code text[start, end)} without its prefix. */
+  void scan(CharSequence text, int start, int end, Consumer<Version> sink) {
+    scan(
+        text,
+        start,
+        end,
+        (t, s, e, major, minor, patch, preRelease, build) ->
+            sink.accept(version(t, s, e, major, minor, patch, preRelease, build)));
+  }
+
+  /**
+   * Like {@link #scan(CharSequence, int, int, Consumer)}, but without creating any objects.
+   *
+   * @return the number of candidates found, whether they were valid versions or not
+   */
+  int scan(CharSequence text, int start, int end, Sink sink) {
+    int candidates = 0;
+    int i = start;
+    while (i < end) {
+      int core = i + prefix.length();
+      int coreEnd = core <= end && startsWithPrefix(text, i) ? versionCoreEnd(text, core, end) : -1;
+      if (coreEnd < 0) {
+        i++;
+        continue;
+      }
+
+      int tagEnd = coreEnd;
+      while (tagEnd < end && !isWhitespace(text.charAt(tagEnd))) {
+        tagEnd++;
+      }
+
+      parse(text, core, tagEnd, sink);
+      candidates++;
+      i = tagEnd;
+    }
+    return candidates;
+  }
+
+  private boolean startsWithPrefix(CharSequence text, int at) {
+    for (int j = 0; j < prefix.length(); j++) {
+      if (text.charAt(at + j) != prefix.charAt(j)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * End of the shortest text matching {@code \d+.\d+\.\d+} at {@code at}, choosing the same split
+   * as the greedy regex would, or -1.
+   */
+  private static int versionCoreEnd(CharSequence text, int at, int end) {
+    int first = digits(text, at, end);
+    if (first == 0) {
+      return -1;
+    }
+
+    int anyChar = at + first;
+    if (anyChar < end && !isLineTerminator(text.charAt(anyChar))) {
+      int tail = dotDigitsEnd(text, anyChar + 1, end);
+      if (tail >= 0) {
+        return tail;
+      }
+    }
+
+    // backtracking: the "any character" consumed a digit of the first run
+    return first >= 3 ? dotDigitsEnd(text, anyChar - 1, end) : -1;
+  }
+
+  /** Matches {@code \d+\.\d+} at {@code at} and returns its end, or -1. */
+  private static int dotDigitsEnd(CharSequence text, int at, int end) {
+    int minor = digits(text, at, end);
+    int dot = at + minor;
+    if (minor == 0 || dot >= end || text.charAt(dot) != '.') {
+      return -1;
+    }
+    int patch = digits(text, dot + 1, end);
+    return patch == 0 ? -1 : dot + 1 + patch;
+  }
+
+  private static int digits(CharSequence text, int at, int end) {
+    int i = at;
+    while (i < end && isDigit(text.charAt(i))) {
+      i++;
+    }
+    return i - at;
+  }
+
+  /** Parses {@code text[start, end)} as a semantic version or returns null if it is not one. */
+  static Version parse(CharSequence text, int start, int end) {
+    Version[] parsed = new Version[1];
+    parse(
+        text,
+        start,
+        end,
+        (t, s, e, major, minor, patch, preRelease, build) ->
+            parsed[0] = version(t, s, e, major, minor, patch, preRelease, build));
+    return parsed[0];
+  }
+
+  private static Version version(
+      CharSequence text,
+      int start,
+      int end,
+      int major,
+      int minor,
+      int patch,
+      int preRelease,
+      int build) {
+    return new Version(
+        text.subSequence(start, end).toString(),
+        major,
+        minor,
+        patch,
+        preRelease < 0 ? -1 : preRelease - start,
+        build < 0 ? -1 : build - start);
+  }
+
+  /** Reports {@code text[start, end)} to the sink if it is a semantic version. */
+  static boolean parse(CharSequence text, int start, int end, Sink sink) {
+    int i = start;
+
+    long major = numeric(text, i, end);
+    if (major < 0) {
+      return false;
+    }
+    i = skipDigits(text, i, end);
+    if (i >= end || text.charAt(i++) != '.') {
+      return false;
+    }
+
+    long minor = numeric(text, i, end);
+    if (minor < 0) {
+      return false;
+    }
+    i = skipDigits(text, i, end);
+    if (i >= end || text.charAt(i++) != '.') {
+      return false;
+    }
+
+    long patch = numeric(text, i, end);
+    if (patch < 0) {
+      return false;
+    }
+    i = skipDigits(text, i, end);
+
+    int preRelease = -1;
+    if (i < end && text.charAt(i) == '-') {
+      preRelease = i + 1;
+      i = identifiers(text, preRelease, end, true);
+      if (i < 0) {
+        return false;
+      }
+    }
+
+    int build = -1;
+    if (i < end && text.charAt(i) == '+') {
+      build = i + 1;
+      i = identifiers(text, build, end, false);
+      if (i < 0) {
+        return false;
+      }
+    }
+
+    if (i != end) {
+      return false;
+    }
+
+    sink.version(text, start, end, (int) major, (int) minor, (int) patch, preRelease, build);
+    return true;
+  }
+
+  /** Value of a numeric identifier without leading zeroes that fits into an int, or -1. */
+  private static long numeric(CharSequence text, int at, int end) {
+    int length = digits(text, at, end);
+    if (length == 0 || (length > 1 && text.charAt(at) == '0') || length > 10) {
+      return -1;
+    }
+    long value = 0;
+    for (int i = at; i < at + length; i++) {
+      value = value * 10 + (text.charAt(i) - '0');
+    }
+    return value <= Integer.MAX_VALUE ? value : -1;
+  }
+
+  private static int skipDigits(CharSequence text, int at, int end) {
+    return at + digits(text, at, end);
+  }
+
+  /**
+   * Consumes dot separated, non-empty identifiers and returns the index after them, or -1. Numeric
+   * pre-release identifiers must not have leading zeroes.
+   */
+  private static int identifiers(CharSequence text, int at, int end, boolean preRelease) {
+    int i = at;
+    while (true) {
+      int identifier = i;
+      boolean numeric = true;
+      while (i < end && isIdentifierChar(text.charAt(i))) {
+        numeric &= isDigit(text.charAt(i));
+        i++;
+      }
+      if (i == identifier) {
+        return -1;
+      }
+      if (preRelease && numeric && i - identifier > 1 && text.charAt(identifier) == '0') {
+        return -1;
+      }
+      if (i < end && text.charAt(i) == '.') {
+        i++;
+      } else {
+        return i;
+      }
+    }
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isIdentifierChar(char c) {
+    return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-';
+  }
+
+  /** {@code \s} of {@link java.util.regex.Pattern} */
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+
+  /** characters not matched by {@code .} of {@link java.util.regex.Pattern} */
+  private static boolean isLineTerminator(char c) {
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+}
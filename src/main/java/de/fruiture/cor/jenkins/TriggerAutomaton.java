@@ -0,0 +1,663 @@
+package de.fruiture.cor.jenkins;
+
+import de.fruiture.cor.jenkins.VersioningStrategy.Change;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Searches several regular expressions at once in time linear to the text, whatever the expressions
+ * look like.
+ *
+ * <p>The expressions are compiled into a single NFA that is simulated one character at a time,
+ * starting a new match at every position. The sets of NFA states reached are cached as the states
+ * of a DFA, with the transitions for ASCII characters, so most characters cost a single lookup.
+ *
+ * <p>Only a subset of {@link Pattern} is supported: characters and escapes, {@code .}, classes with
+ * ranges, negation and {@code \d \w \s}, groups, alternatives and greedy or lazy quantifiers, with
+ * the flags {@code i} and {@code s}. Anchors, boundaries, look-arounds, back references and
+ * possessive quantifiers are not. Like {@link Pattern}, {@code .} and classes match code points, so
+ * a surrogate pair counts as one character.
+ */
+final class TriggerAutomaton {
+
+  private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+  private static final int MAX_STATES = 10_000;
+  private static final int MAX_DFA_STATES = 4096;
+
+  private static final int CLASS = 0;
+  private static final int SPLIT = 1;
+  private static final int ACCEPT = 2;
+
+  // the NFA, a CLASS state consumes a code point and continues with next1
+  private final int[] type;
+  private final int[] next1;
+  private final int[] next2;
+  private final CharClass[] classes;
+  private final Change[] accepts;
+  private final int start;
+
+  // the DFA built so far, reset when it grows too large
+  private final Map<Key, Integer> dfaIndex = new HashMap<>();
+  private final List<int[]> dfaSets = new ArrayList<>();
+  private final List<int[]> dfaAscii = new ArrayList<>();
+  private final List<Change> dfaLevels = new ArrayList<>();
+  private int generation;
+
+  // scratch space for computing sets
+  private final int[] marks;
+  private int mark;
+  private final int[] stack;
+  private final int[] members;
+
+  private TriggerAutomaton(Builder builder, int start) {
+    int n = builder.type.size();
+    this.type = toArray(builder.type);
+    this.next1 = toArray(builder.next1);
+    this.next2 = toArray(builder.next2);
+    this.classes = builder.classes.toArray(new CharClass[n]);
+    this.accepts = builder.accepts.toArray(new Change[n]);
+    this.start = start;
+    // a CLASS state s that matched a surrogate pair waits for its low surrogate as state n + s
+    this.marks = new int[2 * n];
+    this.stack = new int[2 * n];
+    this.members = new int[2 * n];
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
+  /** The position in a text being searched, passed from one part of the text to the next. */
+  static final class Run {
+    private int state = -1;
+    private int generation = -1;
+    private int[] set;
+    /** the last character of the previous part, which needs the next one to be processed */
+    private int pending = -1;
+  }
+
+  /**
+   * Continues {@code run} over {@code text[from, to)}. Unless this is the {@code last} part, the
+   * last character is kept until the next part is known.
+   *
+   * @return the highest level of the expressions that matched, null if none did
+   */
+  synchronized Change find(Run run, CharSequence text, int from, int to, boolean last) {
+    if (run.generation != generation) {
+      run.state = run.set == null ? initial() : state(run.set);
+      run.generation = generation;
+    }
+    Change found = dfaLevels.get(run.state);
+    if (run.pending >= 0 && (from < to || last)) {
+      found = max(found, advance(run, run.pending, from < to ? text.charAt(from) : -1));
+      run.pending = -1;
+    }
+    for (int i = from; i < to && found != Change.MAJOR; i++) {
+      if (i + 1 == to && !last) {
+        run.pending = text.charAt(i);
+        break;
+      }
+      found = max(found, advance(run, text.charAt(i), i + 1 < to ? text.charAt(i + 1) : -1));
+    }
+    run.set = dfaSets.get(run.state);
+    return found;
+  }
+
+  private Change advance(Run run, int c, int lookahead) {
+    int[] ascii = dfaAscii.get(run.state);
+    int next = c < 128 ? ascii[c] : -1;
+    if (next < 0) {
+      int before = generation;
+      next = state(step(dfaSets.get(run.state), c, lookahead));
+      if (generation == before && c < 128) {
+        ascii[c] = next;
+      }
+    }
+    run.state = next;
+    run.generation = generation;
+    return dfaLevels.get(next);
+  }
+
+  private static Change max(Change a, Change b) {
+    return a == null || (b != null && b.compareTo(a) > 0) ? b : a;
+  }
+
+  private int initial() {
+    mark++;
+    int count = closure(start, 0);
+    return state(sorted(count));
+  }
+
+  /** the set of states after {@code c}, with a new match started */
+  private int[] step(int[] set, int c, int lookahead) {
+    mark++;
+    int count = 0;
+    int n = type.length;
+    boolean pair =
+        Character.isHighSurrogate((char) c) && Character.isLowSurrogate((char) lookahead);
+    int codePoint = pair ? Character.toCodePoint((char) c, (char) lookahead) : c;
+    for (int s : set) {
+      if (s >= n) {
+        count = closure(next1[s - n], count);
+      } else if (type[s] == CLASS && classes[s].matches(codePoint)) {
+        if (pair) {
+          if (marks[s + n] != mark) {
+            marks[s + n] = mark;
+            members[count++] = s + n;
+          }
+        } else {
+          count = closure(next1[s], count);
+        }
+      }
+    }
+    count = closure(start, count);
+    return sorted(count);
+  }
+
+  /** adds the states reachable from {@code s} without consuming anything */
+  private int closure(int s, int count) {
+    int top = 0;
+    stack[top++] = s;
+    while (top > 0) {
+      int state = stack[--top];
+      if (state < 0 || marks[state] == mark) {
+        continue;
+      }
+      marks[state] = mark;
+      if (type[state] == SPLIT) {
+        stack[top++] = next2[state];
+        stack[top++] = next1[state];
+      } else {
+        members[count++] = state;
+      }
+    }
+    return count;
+  }
+
+  private int[] sorted(int count) {
+    int[] set = Arrays.copyOf(members, count);
+    Arrays.sort(set);
+    return set;
+  }
+
+  private int state(int[] set) {
+    Key key = new Key(set);
+    Integer known = dfaIndex.get(key);
+    if (known != null) {
+      return known;
+    }
+    if (dfaSets.size() == MAX_DFA_STATES) {
+      dfaIndex.clear();
+      dfaSets.clear();
+      dfaAscii.clear();
+      dfaLevels.clear();
+      generation++;
+    }
+    Change level = null;
+    for (int s : set) {
+      if (s < type.length && type[s] == ACCEPT) {
+        level = max(level, accepts[s]);
+      }
+    }
+    int[] ascii = new int[128];
+    Arrays.fill(ascii, -1);
+    int index = dfaSets.size();
+    dfaIndex.put(key, index);
+    dfaSets.add(set);
+    dfaAscii.add(ascii);
+    dfaLevels.add(level);
+    return index;
+  }
+
+  private static final class Key {
+    private final int[] set;
+    private final int hash;
+
+    Key(int[] set) {
+      this.set = set;
+      this.hash = Arrays.hashCode(set);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && Arrays.equals(set, ((Key) o).set);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  /** Collects the expressions, see {@link #add}. */
+  static final class Builder {
+    private final List<Integer> type = new ArrayList<>();
+    private final List<Integer> next1 = new ArrayList<>();
+    private final List<Integer> next2 = new ArrayList<>();
+    private final List<CharClass> classes = new ArrayList<>();
+    private final List<Change> accepts = new ArrayList<>();
+    private final List<Integer> starts = new ArrayList<>();
+
+    /** Adds an expression, returns false and adds nothing if it is not supported. */
+    boolean add(Pattern pattern, Change level) {
+      Node node;
+      try {
+        node = new Parser(pattern).parse();
+      } catch (Unsupported e) {
+        return false;
+      }
+      int size = type.size();
+      try {
+        starts.add(compile(node, state(ACCEPT, -1, -1, null, level)));
+        return true;
+      } catch (Unsupported e) {
+        // too large, undo
+        while (type.size() > size) {
+          int last = type.size() - 1;
+          type.remove(last);
+          next1.remove(last);
+          next2.remove(last);
+          classes.remove(last);
+          accepts.remove(last);
+        }
+        return false;
+      }
+    }
+
+    /** the automaton or null if no expression was added */
+    TriggerAutomaton build() {
+      if (starts.isEmpty()) {
+        return null;
+      }
+      int start = starts.get(starts.size() - 1);
+      for (int i = starts.size() - 2; i >= 0; i--) {
+        start = state(SPLIT, starts.get(i), start, null, null);
+      }
+      return new TriggerAutomaton(this, start);
+    }
+
+    private int state(int t, int n1, int n2, CharClass c, Change accept) {
+      if (type.size() == MAX_STATES) {
+        throw new Unsupported();
+      }
+      type.add(t);
+      next1.add(n1);
+      next2.add(n2);
+      classes.add(c);
+      accepts.add(accept);
+      return type.size() - 1;
+    }
+
+    /** the first state of {@code node}, which continues with {@code next} */
+    private int compile(Node node, int next) {
+      if (node instanceof Atom) {
+        return state(CLASS, next, -1, ((Atom) node).charClass, null);
+      } else if (node instanceof Sequence) {
+        List<Node> nodes = ((Sequence) node).nodes;
+        for (int i = nodes.size() - 1; i >= 0; i--) {
+          next = compile(nodes.get(i), next);
+        }
+        return next;
+      } else if (node instanceof Alternatives) {
+        List<Node> nodes = ((Alternatives) node).nodes;
+        int first = compile(nodes.get(nodes.size() - 1), next);
+        for (int i = nodes.size() - 2; i >= 0; i--) {
+          first = state(SPLIT, compile(nodes.get(i), next), first, null, null);
+        }
+        return first;
+      }
+
+      Repetition repetition = (Repetition) node;
+      int first = next;
+      if (repetition.max < 0) {
+        int loop = state(SPLIT, -1, next, null, null);
+        next1.set(loop, compile(repetition.node, loop));
+        first = loop;
+      } else {
+        for (int i = repetition.min; i < repetition.max; i++) {
+          first = state(SPLIT, compile(repetition.node, first), next, null, null);
+        }
+      }
+      for (int i = 0; i < repetition.min; i++) {
+        first = compile(repetition.node, first);
+      }
+      return first;
+    }
+  }
+
+  private static final class Unsupported extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    Unsupported() {
+      super(null, null, false, false);
+    }
+  }
+
+  private interface Node {}
+
+  private static final class Atom implements Node {
+    final CharClass charClass;
+
+    Atom(CharClass charClass) {
+      this.charClass = charClass;
+    }
+  }
+
+  private static final class Sequence implements Node {
+    final List<Node> nodes = new ArrayList<>();
+  }
+
+  private static final class Alternatives implements Node {
+    final List<Node> nodes = new ArrayList<>();
+  }
+
+  private static final class Repetition implements Node {
+    final Node node;
+    final int min;
+    /** -1 for no limit */
+    final int max;
+
+    Repetition(Node node, int min, int max) {
+      this.node = node;
+      this.min = min;
+      this.max = max;
+    }
+  }
+
+  /** A set of code points, like a character class of {@link Pattern}. */
+  static final class CharClass {
+    private final StringBuilder ranges = new StringBuilder();
+    private boolean negated;
+    private boolean caseInsensitive;
+
+    void add(int from, int to) {
+      ranges.append((char) from).append((char) to);
+    }
+
+    boolean matches(int c) {
+      boolean in = contains(c);
+      if (!in && caseInsensitive && c < 128 && Character.isLetter(c)) {
+        in =
+            contains(
+                Character.isUpperCase(c) ? Character.toLowerCase(c) : Character.toUpperCase(c));
+      }
+      return in != negated;
+    }
+
+    private boolean contains(int c) {
+      for (int i = 0; i < ranges.length(); i += 2) {
+        if (c >= ranges.charAt(i) && c <= ranges.charAt(i + 1)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /** Recursive descent over the supported subset, throws {@link Unsupported} for the rest. */
+  private static final class Parser {
+    private final String source;
+    private boolean caseInsensitive;
+    private boolean dotAll;
+    private int at;
+
+    Parser(Pattern pattern) {
+      int flags = pattern.flags();
+      if ((flags & ~(Pattern.CASE_INSENSITIVE | Pattern.DOTALL)) != 0) {
+        throw new Unsupported();
+      }
+      this.source = pattern.pattern();
+      this.caseInsensitive = (flags & Pattern.CASE_INSENSITIVE) != 0;
+      this.dotAll = (flags & Pattern.DOTALL) != 0;
+    }
+
+    Node parse() {
+      if (source.startsWith("(?") && source.length() > 2 && "is".indexOf(source.charAt(2)) >= 0) {
+        int close = source.indexOf(')');
+        if (close < 0 || !source.substring(2, close).matches("[is]+")) {
+          throw new Unsupported();
+        }
+        caseInsensitive |= source.substring(2, close).contains("i");
+        dotAll |= source.substring(2, close).contains("s");
+        at = close + 1;
+      }
+      Node node = alternatives();
+      if (at != source.length()) {
+        throw new Unsupported();
+      }
+      return node;
+    }
+
+    private Node alternatives() {
+      Node first = sequence();
+      if (!peek('|')) {
+        return first;
+      }
+      Alternatives alternatives = new Alternatives();
+      alternatives.nodes.add(first);
+      while (peek('|')) {
+        at++;
+        alternatives.nodes.add(sequence());
+      }
+      return alternatives;
+    }
+
+    private Node sequence() {
+      Sequence sequence = new Sequence();
+      while (at < source.length() && !peek('|') && !peek(')')) {
+        sequence.nodes.add(quantified());
+      }
+      return sequence;
+    }
+
+    private Node quantified() {
+      Node node = atom();
+      if (at == source.length()) {
+        return node;
+      }
+      char c = source.charAt(at);
+      int min = 0;
+      int max = -1;
+      if (c == '+') {
+        min = 1;
+      } else if (c == '?') {
+        max = 1;
+      } else if (c == '{') {
+        int close = source.indexOf('}', at);
+        String bounds = close < 0 ? "" : source.substring(at + 1, close);
+        if (!bounds.matches("\\d{1,3}(,\\d{0,3})?")) {
+          throw new Unsupported();
+        }
+        String[] limits = bounds.split(",", -1);
+        min = Integer.parseInt(limits[0]);
+        max = limits.length == 1 ? min : limits[1].isEmpty() ? -1 : Integer.parseInt(limits[1]);
+        if (max >= 0 && max < min) {
+          throw new Unsupported();
+        }
+        at = close;
+      } else if (c != '*') {
+        return node;
+      }
+      at++;
+      if (peek('?')) {
+        // lazy, which finds a match just as well
+        at++;
+      }
+      if (at < source.length() && "*+?{".indexOf(source.charAt(at)) >= 0) {
+        // possessive or repeated quantifiers
+        throw new Unsupported();
+      }
+      return new Repetition(node, min, max);
+    }
+
+    private Node atom() {
+      char c = source.charAt(at++);
+      if (c == '(') {
+        if (source.startsWith("?:", at)) {
+          at += 2;
+        } else if (peek('?')) {
+          throw new Unsupported();
+        }
+        Node node = alternatives();
+        if (!peek(')')) {
+          throw new Unsupported();
+        }
+        at++;
+        return node;
+      } else if (c == '[') {
+        return new Atom(characterClass());
+      } else if (c == '.') {
+        if (dotAll) {
+          return new Atom(everything());
+        }
+        CharClass line = everything();
+        line.add('\n', '\n');
+        line.add('\r', '\r');
+        line.add('\u0085', '\u0085');
+        line.add('\u2028', '\u2029');
+        return new Atom(line);
+      } else if (c == '\\') {
+        CharClass escaped = charClass();
+        escape(escaped);
+        return new Atom(escaped);
+      } else if (META_CHARACTERS.indexOf(c) >= 0 || Character.isSurrogate(c)) {
+        throw new Unsupported();
+      }
+      CharClass single = charClass();
+      single.add(c, c);
+      return new Atom(single);
+    }
+
+    private CharClass charClass() {
+      CharClass charClass = new CharClass();
+      charClass.caseInsensitive = caseInsensitive;
+      return charClass;
+    }
+
+    /** any code point, including supplementary ones */
+    private CharClass everything() {
+      CharClass everything = new CharClass();
+      everything.negated = true;
+      return everything;
+    }
+
+    private CharClass characterClass() {
+      CharClass charClass = charClass();
+      if (peek('^')) {
+        at++;
+        charClass.negated = true;
+      }
+      int first = at;
+      while (at < source.length() && (source.charAt(at) != ']' || at == first)) {
+        char c = source.charAt(at++);
+        int from;
+        if (c == '\\') {
+          int before = charClass.ranges.length();
+          from = escape(charClass);
+          if (from < 0) {
+            if (peek('-') && !source.startsWith("-]", at)) {
+              throw new Unsupported();
+            }
+            continue;
+          }
+          charClass.ranges.setLength(before);
+        } else if (c == '[' || (c == '&' && peek('&')) || Character.isSurrogate(c)) {
+          throw new Unsupported();
+        } else {
+          from = c;
+        }
+
+        int to = from;
+        if (peek('-') && at + 1 < source.length() && source.charAt(at + 1) != ']') {
+          at++;
+          char d = source.charAt(at++);
+          if (d == '\\') {
+            CharClass ignored = charClass();
+            to = escape(ignored);
+            if (to < 0) {
+              throw new Unsupported();
+            }
+          } else if (d == '[' || Character.isSurrogate(d)) {
+            throw new Unsupported();
+          } else {
+            to = d;
+          }
+          if (to < from) {
+            throw new Unsupported();
+          }
+        }
+        charClass.add(from, to);
+      }
+      if (!peek(']')) {
+        throw new Unsupported();
+      }
+      at++;
+      return charClass;
+    }
+
+    /**
+     * Adds the escape after a backslash to {@code charClass}, returns the character if it is a
+     * single one or -1 for a predefined class.
+     */
+    private int escape(CharClass charClass) {
+      if (at == source.length()) {
+        throw new Unsupported();
+      }
+      char c = source.charAt(at++);
+      int single;
+      switch (c) {
+        case 'd':
+          charClass.add('0', '9');
+          return -1;
+        case 'w':
+          charClass.add('a', 'z');
+          charClass.add('A', 'Z');
+          charClass.add('0', '9');
+          charClass.add('_', '_');
+          return -1;
+        case 's':
+          charClass.add(' ', ' ');
+          charClass.add('\t', '\r');
+          return -1;
+        case 't':
+          single = '\t';
+          break;
+        case 'n':
+          single = '\n';
+          break;
+        case 'r':
+          single = '\r';
+          break;
+        case 'f':
+          single = '\f';
+          break;
+        case 'a':
+          single = '\u0007';
+          break;
+        case 'e':
+          single = '\u001b';
+          break;
+        default:
+          if (Character.isLetterOrDigit(c) || Character.isSurrogate(c)) {
+            // \D, \b, \Q, \p{...}, \1, \x..., ...
+            throw new Unsupported();
+          }
+          single = c;
+      }
+      charClass.add(single, single);
+      return single;
+    }
+
+    private boolean peek(char c) {
+      return at < source.length() && source.charAt(at) == c;
+    }
+  }
+}
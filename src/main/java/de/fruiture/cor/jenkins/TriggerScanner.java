@@ -0,0 +1,533 @@
+package de.fruiture.cor.jenkins;
+
+import de.fruiture.cor.jenkins.VersioningStrategy.Change;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the change level of commit messages with all triggers at once.
+ *
+ * <p>Triggers without any regular expression syntax are compiled into an Aho-Corasick automaton,
+ * and those {@link TriggerAutomaton} supports into one that finds them in linear time. The others
+ * are combined into a single alternation with the major triggers first. Only triggers that cannot
+ * be combined safely (back references, {@code \G}, comments, ...) are searched for one by one.
+ * Scanning stops as soon as a major trigger is found.
+ *
+ * <p>Backtracking can make {@link Pattern} take exponential time, so the characters it reads and
+ * the time it takes are limited by a budget. Each search of a pattern in a text or chunk has a
+ * budget of its own, time spent reading or on other patterns does not count. Exceeding it throws an
+ * {@link IllegalStateException} naming the trigger.
+ */
+final class TriggerScanner {
+
+  private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+  private static final int INLINE_FLAGS =
+      Pattern.CASE_INSENSITIVE
+          | Pattern.MULTILINE
+          | Pattern.DOTALL
+          | Pattern.UNICODE_CASE
+          | Pattern.UNIX_LINES
+          | Pattern.UNICODE_CHARACTER_CLASS;
+
+  static final long DEFAULT_BUDGET_STEPS = 100_000_000L;
+  static final long DEFAULT_BUDGET_MILLIS = 10_000L;
+
+  private final Literals literals;
+
+  /** the regular expression triggers searched in linear time, or null */
+  private final TriggerAutomaton automaton;
+
+  /** all regular expression triggers, major ones first in group 1, or null */
+  private final Pattern combined;
+
+  /** only the major regular expression triggers, or null */
+  private final Pattern combinedMajor;
+
+  private final List<Pattern> separateMinor = new ArrayList<>();
+  private final List<Pattern> separateMajor = new ArrayList<>();
+
+  /** null unless measured */
+  private final CalculatorMetrics metrics;
+
+  private final long budgetSteps;
+  private final long budgetMillis;
+
+  TriggerScanner(List<Pattern> triggerMinorChange, List<Pattern> triggerMajorChange) {
+    this(triggerMinorChange, triggerMajorChange, null);
+  }
+
+  TriggerScanner(
+      List<Pattern> triggerMinorChange,
+      List<Pattern> triggerMajorChange,
+      CalculatorMetrics metrics) {
+    this(
+        triggerMinorChange,
+        triggerMajorChange,
+        metrics,
+        DEFAULT_BUDGET_STEPS,
+        DEFAULT_BUDGET_MILLIS);
+  }
+
+  /**
+   * @param budgetSteps the characters {@link Pattern} may read per search
+   * @param budgetMillis the time {@link Pattern} may take per search
+   */
+  TriggerScanner(
+      List<Pattern> triggerMinorChange,
+      List<Pattern> triggerMajorChange,
+      CalculatorMetrics metrics,
+      long budgetSteps,
+      long budgetMillis) {
+    this.metrics = metrics;
+    this.budgetSteps = budgetSteps;
+    this.budgetMillis = budgetMillis;
+    Literals.Builder literals = new Literals.Builder();
+    TriggerAutomaton.Builder automaton = new TriggerAutomaton.Builder();
+    List<String> minor = new ArrayList<>();
+    List<String> major = new ArrayList<>();
+
+    for (Pattern p : triggerMajorChange) {
+      add(p, Change.MAJOR, literals, automaton, major, separateMajor);
+    }
+    for (Pattern p : triggerMinorChange) {
+      add(p, Change.MINOR, literals, automaton, minor, separateMinor);
+    }
+
+    this.literals = literals.build();
+    this.automaton = automaton.build();
+    this.combinedMajor = major.isEmpty() ? null : Pattern.compile(String.join("|", major));
+    if (major.isEmpty()) {
+      this.combined = minor.isEmpty() ? null : Pattern.compile(String.join("|", minor));
+    } else if (minor.isEmpty()) {
+      this.combined = Pattern.compile("(" + String.join("|", major) + ")");
+    } else {
+      this.combined =
+          Pattern.compile("(" + String.join("|", major) + ")|" + String.join("|", minor));
+    }
+  }
+
+  private static void add(
+      Pattern p,
+      Change level,
+      Literals.Builder literals,
+      TriggerAutomaton.Builder automaton,
+      List<String> combined,
+      List<Pattern> separate) {
+    String literal = literal(p);
+    if (literal != null) {
+      literals.add(literal, level);
+    } else if (automaton.add(p, level)) {
+      return;
+    } else if (combinable(p)) {
+      combined.add(inline(p));
+    } else {
+      separate.add(p);
+    }
+  }
+
+  /** the text a trigger matches literally, or null */
+  private static String literal(Pattern p) {
+    String source = p.pattern();
+    if (source.isEmpty()) {
+      return null;
+    } else if (p.flags() == Pattern.LITERAL) {
+      return source;
+    } else if (p.flags() != 0) {
+      return null;
+    }
+
+    for (int i = 0; i < source.length(); i++) {
+      if (META_CHARACTERS.indexOf(source.charAt(i)) >= 0) {
+        return null;
+      }
+    }
+    return source;
+  }
+
+  private static boolean combinable(Pattern p) {
+    String source = p.pattern();
+    return (p.flags() & ~INLINE_FLAGS) == 0
+        && !source.matches("(?s).*\\\\([1-9]|k<|G|Q).*")
+        && !source.matches("(?s).*\\(\\?<[a-zA-Z].*")
+        && !(source.contains("#") && source.contains("(?"));
+  }
+
+  /** non-capturing group with the pattern's flags, to be used in an alternation */
+  private static String inline(Pattern p) {
+    StringBuilder flags = new StringBuilder();
+    int f = p.flags();
+    if ((f & Pattern.CASE_INSENSITIVE) != 0) flags.append('i');
+    if ((f & Pattern.MULTILINE) != 0) flags.append('m');
+    if ((f & Pattern.DOTALL) != 0) flags.append('s');
+    if ((f & Pattern.UNICODE_CASE) != 0) flags.append('u');
+    if ((f & Pattern.UNIX_LINES) != 0) flags.append('d');
+    if ((f & Pattern.UNICODE_CHARACTER_CLASS) != 0) flags.append('U');
+    return "(?" + flags + ":" + p.pattern() + ")";
+  }
+
+  /** the highest change level found, or null if the text is blank and matches no trigger */
+  Change scan(CharSequence text) {
+    if (metrics != null) {
+      metrics.messages(text, 0, text.length());
+    }
+    Scan scan = new Scan();
+    scan.literals(text, 0, text.length());
+    scan.linear(text, 0, text.length(), true);
+    scan.expressions(text, 0, Integer.MAX_VALUE);
+    return scan.result();
+  }
+
+  /**
+   * Like {@link #scan(CharSequence)}, but reads the text in chunks of {@code bufferSize} characters
+   * and returns as soon as a major trigger is found.
+   *
+   * <p>Literal triggers and those searched in linear time are found regardless of chunk boundaries.
+   * Other regular expressions are searched in the current chunk together with the last {@code
+   * bufferSize} characters before it, so their matches are found across boundaries as long as they
+   * are not longer than that.
+   */
+  Change scan(Reader reader, int bufferSize) throws IOException {
+    Scan scan = new Scan();
+    char[] buffer = new char[bufferSize];
+    StringBuilder window = new StringBuilder();
+    int from = 0;
+
+    int n;
+    while ((n = reader.read(buffer)) >= 0) {
+      CharBuffer chunk = CharBuffer.wrap(buffer, 0, n);
+      if (metrics != null) {
+        metrics.messages(chunk, 0, n);
+      }
+      scan.literals(chunk, 0, n);
+      scan.linear(chunk, 0, n, false);
+      if (scan.major) {
+        return Change.MAJOR;
+      }
+
+      window.append(buffer, 0, n);
+      // where the window will start to be searched again with the next chunk
+      scan.expressions(window, from, Math.max(from, window.length() - bufferSize));
+      if (scan.major) {
+        return Change.MAJOR;
+      }
+
+      // one more character is kept as context for anchors, boundaries and look-behinds
+      int drop = window.length() - (bufferSize + 1);
+      if (drop > 0) {
+        window.delete(0, drop);
+        from = 1;
+      }
+    }
+
+    scan.linear(window, window.length(), window.length(), true);
+    scan.expressions(window, from, Integer.MAX_VALUE);
+    return scan.result();
+  }
+
+  private final class Scan {
+    private boolean blank = true;
+    private boolean minor;
+    private boolean major;
+    private int state;
+    private final TriggerAutomaton.Run run = new TriggerAutomaton.Run();
+
+    void literals(CharSequence text, int from, int to) {
+      if (literals.isEmpty()) {
+        for (int i = from; i < to && blank; i++) {
+          blank = text.charAt(i) <= ' ';
+        }
+        return;
+      }
+
+      long started = metrics != null ? System.nanoTime() : 0;
+      automaton(text, from, to);
+      if (metrics != null) {
+        metrics.trigger(CalculatorMetrics.LITERAL_TRIGGERS, System.nanoTime() - started);
+      }
+    }
+
+    private void automaton(CharSequence text, int from, int to) {
+      for (int i = from; i < to; i++) {
+        char c = text.charAt(i);
+        if (c > ' ') {
+          blank = false;
+        }
+        state = literals.next(state, c);
+        Change found = literals.output[state];
+        if (found == Change.MAJOR) {
+          major = true;
+          return;
+        } else if (found == Change.MINOR) {
+          minor = true;
+        }
+      }
+    }
+
+    /** Continues the search for the triggers of {@link #automaton} with {@code text[from, to)}. */
+    void linear(CharSequence text, int from, int to, boolean last) {
+      if (automaton == null || major) {
+        return;
+      }
+      long started = metrics != null ? System.nanoTime() : 0;
+      Change found = automaton.find(run, text, from, to, last);
+      if (found == Change.MAJOR) {
+        major = true;
+      } else if (found == Change.MINOR) {
+        minor = true;
+      }
+      if (metrics != null) {
+        metrics.trigger(CalculatorMetrics.AUTOMATON_TRIGGERS, System.nanoTime() - started);
+      }
+    }
+
+    /**
+     * Searches the regular expression triggers in {@code text[from, end)}, the characters before
+     * are only context. Matches that start at or after {@code again} and that more text could
+     * change, like those of a look-ahead or {@code $} at the end, are left for the next search of
+     * that part with more text. {@link Integer#MAX_VALUE} accepts all matches of the last text.
+     */
+    void expressions(CharSequence text, int from, int again) {
+      if (combined != null && !major) {
+        long started = metrics != null ? System.nanoTime() : 0;
+        combined(text, from, again);
+        if (metrics != null) {
+          metrics.trigger(CalculatorMetrics.COMBINED_TRIGGERS, System.nanoTime() - started);
+        }
+      }
+
+      for (int i = 0; i < separateMajor.size() && !major; i++) {
+        major = separate(separateMajor.get(i), text, from, again);
+      }
+      for (int i = 0; i < separateMinor.size() && !minor && !major; i++) {
+        minor = separate(separateMinor.get(i), text, from, again);
+      }
+    }
+
+    private void combined(CharSequence text, int from, int again) {
+      int majorFrom = from;
+      if (!minor) {
+        Matcher matcher = find(combined, text, from);
+        boolean found = accepted(matcher, again);
+        if (found && combinedMajor != null && matcher.start(1) >= 0) {
+          major = true;
+          return;
+        } else if (found) {
+          minor = true;
+          // no major trigger matches at or before this position
+          majorFrom = matcher.start() + 1;
+        }
+      }
+
+      if (minor && combinedMajor != null && majorFrom <= text.length()) {
+        Matcher matcher = find(combinedMajor, text, majorFrom);
+        major = accepted(matcher, again);
+      }
+    }
+
+    private boolean separate(Pattern pattern, CharSequence text, int from, int again) {
+      long started = metrics != null ? System.nanoTime() : 0;
+      Matcher matcher = find(pattern, text, from);
+      boolean found = accepted(matcher, again);
+      if (metrics != null) {
+        metrics.trigger(pattern.pattern(), System.nanoTime() - started);
+      }
+      return found;
+    }
+
+    /** whether a match is final, it may also depend on text beyond the end when it hit that */
+    private boolean accepted(Matcher matcher, int again) {
+      return matcher != null && (!matcher.hitEnd() || matcher.start() < again);
+    }
+
+    /** the matcher after finding {@code pattern} in {@code text[from, end)}, or null */
+    private Matcher find(Pattern pattern, CharSequence text, int from) {
+      Budgeted budgeted = new Budgeted(text, pattern);
+      Matcher matcher =
+          pattern
+              .matcher(budgeted)
+              .region(from, text.length())
+              .useTransparentBounds(true)
+              .useAnchoringBounds(false);
+      budgeted.started = System.nanoTime();
+      return matcher.find() ? matcher : null;
+    }
+
+    /** A text that counts the characters read from it against the budget of one search. */
+    private final class Budgeted implements CharSequence {
+      private final CharSequence text;
+      private final Pattern pattern;
+      private final long budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+
+      /** characters read so far */
+      private long steps;
+
+      private long started;
+
+      Budgeted(CharSequence text, Pattern pattern) {
+        this.text = text;
+        this.pattern = pattern;
+      }
+
+      @Override
+      public char charAt(int index) {
+        if (++steps > budgetSteps
+            || ((steps & 0x3ff) == 0 && System.nanoTime() - started > budgetNanos)) {
+          throw new IllegalStateException(
+              String.format(
+                  "trigger '%s' exceeded the budget of %d steps or %d ms on %d characters,"
+                      + " it backtracks too much",
+                  pattern.pattern(), budgetSteps, budgetMillis, text.length()));
+        }
+        return text.charAt(index);
+      }
+
+      @Override
+      public int length() {
+        return text.length();
+      }
+
+      @Override
+      public CharSequence subSequence(int start, int end) {
+        return text.subSequence(start, end);
+      }
+
+      @Override
+      public String toString() {
+        return text.toString();
+      }
+    }
+
+    Change result() {
+      if (major) {
+        return Change.MAJOR;
+      } else if (minor) {
+        return Change.MINOR;
+      }
+      return blank ? null : Change.PATCH;
+    }
+  }
+
+  /** Aho-Corasick automaton over the literal triggers */
+  private static final class Literals {
+
+    /** sorted outgoing characters per node */
+    private final char[][] labels;
+
+    private final int[][] targets;
+    private final int[] fail;
+
+    /** highest level of a trigger ending in a node or any of its suffixes, or null */
+    private final Change[] output;
+
+    private Literals(char[][] labels, int[][] targets, int[] fail, Change[] output) {
+      this.labels = labels;
+      this.targets = targets;
+      this.fail = fail;
+      this.output = output;
+    }
+
+    boolean isEmpty() {
+      return labels.length == 1;
+    }
+
+    private int next(int state, char c) {
+      while (true) {
+        int k = Arrays.binarySearch(labels[state], c);
+        if (k >= 0) {
+          return targets[state][k];
+        } else if (state == 0) {
+          return 0;
+        }
+        state = fail[state];
+      }
+    }
+
+    static final class Builder {
+      private final List<StringBuilder> labels = new ArrayList<>();
+      private final List<List<Integer>> targets = new ArrayList<>();
+      private final List<Change> output = new ArrayList<>();
+
+      Builder() {
+        node();
+      }
+
+      private int node() {
+        labels.add(new StringBuilder());
+        targets.add(new ArrayList<>());
+        output.add(null);
+        return labels.size() - 1;
+      }
+
+      void add(String literal, Change level) {
+        int state = 0;
+        for (int i = 0; i < literal.length(); i++) {
+          char c = literal.charAt(i);
+          int k = labels.get(state).indexOf(String.valueOf(c));
+          if (k >= 0) {
+            state = targets.get(state).get(k);
+          } else {
+            int next = node();
+            labels.get(state).append(c);
+            targets.get(state).add(next);
+            state = next;
+          }
+        }
+        Change current = output.get(state);
+        if (current == null || level.compareTo(current) > 0) {
+          output.set(state, level);
+        }
+      }
+
+      Literals build() {
+        int n = labels.size();
+        char[][] sortedLabels = new char[n][];
+        int[][] sortedTargets = new int[n][];
+        for (int s = 0; s < n; s++) {
+          char[] l = labels.get(s).toString().toCharArray();
+          Integer[] order = new Integer[l.length];
+          for (int k = 0; k < l.length; k++) {
+            order[k] = k;
+          }
+          Arrays.sort(order, (a, b) -> Character.compare(l[a], l[b]));
+          sortedLabels[s] = new char[l.length];
+          sortedTargets[s] = new int[l.length];
+          for (int k = 0; k < l.length; k++) {
+            sortedLabels[s][k] = l[order[k]];
+            sortedTargets[s][k] = targets.get(s).get(order[k]);
+          }
+        }
+
+        // breadth first, so that the failure links of shorter prefixes are known
+        int[] fail = new int[n];
+        Change[] out = output.toArray(new Change[n]);
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int child : sortedTargets[0]) {
+          queue[tail++] = child;
+        }
+        Literals automaton = new Literals(sortedLabels, sortedTargets, fail, out);
+        while (head < tail) {
+          int s = queue[head++];
+          for (int k = 0; k < sortedLabels[s].length; k++) {
+            int child = sortedTargets[s][k];
+            fail[child] = automaton.next(fail[s], sortedLabels[s][k]);
+            Change inherited = out[fail[child]];
+            if (inherited != null && (out[child] == null || inherited.compareTo(out[child]) > 0)) {
+              out[child] = inherited;
+            }
+            queue[tail++] = child;
+          }
+        }
+        return automaton;
+      }
+    }
+  }
+}
@@ -4,77 +4,177 @@ import com.github.zafarkhaja.semver.expr.Expression;
 import java.io.Serializable;
 import java.util.Objects;
 
-/** Serializable facade around {@link com.github.zafarkhaja.semver.Version} */
+/**
+ * Serializable facade around {@link com.github.zafarkhaja.semver.Version}
+ *
+ * <p>Version numbers, release state, ordering and increments are answered from the parsed text
+ * alone, the library's object is only created for expressions. Instances are immutable, {@link
+ * #valueOf} shares them within the JVM.
+ */
 public class Version implements Comparable<Version>, Serializable {
+  private static final long serialVersionUID = 1L;
 
   private final String text;
-  private final transient com.github.zafarkhaja.semver.Version _version;
+
+  // only the text is serialized, see readResolve()
+  private final transient int major;
+  private final transient int minor;
+  private final transient int patch;
+  private final transient int preRelease;
+  private final transient int build;
+
+  private transient com.github.zafarkhaja.semver.Version _version;
 
   public Version(String text) {
+    this(parse(text));
+  }
+
+  /** the version with the text, shared with other users of the same version */
+  public static Version valueOf(String text) {
+    return VersionPool.SHARED.get(text);
+  }
+
+  private Version(Version parsed) {
+    this(parsed.text, parsed.major, parsed.minor, parsed.patch, parsed.preRelease, parsed.build);
+  }
+
+  /**
+   * @param preRelease offset of the pre-release version in {@code text} or -1
+   * @param build offset of the build metadata in {@code text} or -1
+   */
+  Version(String text, int major, int minor, int patch, int preRelease, int build) {
     this.text = text;
-    this._version = com.github.zafarkhaja.semver.Version.valueOf(text);
+    this.major = major;
+    this.minor = minor;
+    this.patch = patch;
+    this.preRelease = preRelease;
+    this.build = build;
+  }
+
+  private static Version parse(String text) {
+    Version parsed = text != null ? TagParser.parse(text, 0, text.length()) : null;
+    if (parsed == null) {
+      // let the library explain what is wrong
+      com.github.zafarkhaja.semver.Version.valueOf(text);
+      throw new IllegalArgumentException("not a semantic version: " + text);
+    }
+    return parsed;
+  }
+
+  private Object readResolve() {
+    return valueOf(text);
   }
 
-  private Version(com.github.zafarkhaja.semver.Version _version) {
-    this.text = _version.toString();
-    this._version = _version;
+  private com.github.zafarkhaja.semver.Version version() {
+    if (_version == null) {
+      _version = com.github.zafarkhaja.semver.Version.valueOf(text);
+    }
+    return _version;
   }
 
+  /** The expression is compiled once and shared within the JVM. */
   public boolean satisfies(String expr) {
-    return _version.satisfies(expr);
+    return satisfies(VersionQuery.of(expr).expression);
   }
 
   public boolean satisfies(Expression expr) {
-    return _version.satisfies(expr);
+    return version().satisfies(expr);
   }
 
   public Version incrementMajorVersion() {
-    return new Version(_version.incrementMajorVersion());
+    return normal(next(major), 0, 0);
   }
 
   public Version incrementMajorVersion(String preRelease) {
-    return new Version(_version.incrementMajorVersion(preRelease));
+    Version incremented = withPreRelease(normal(next(major), 0, 0), preRelease);
+    return incremented != null
+        ? incremented
+        : new Version(version().incrementMajorVersion(preRelease).toString());
   }
 
   public Version incrementMinorVersion() {
-    return new Version(_version.incrementMinorVersion());
+    return normal(major, next(minor), 0);
   }
 
   public Version incrementMinorVersion(String preRelease) {
-    return new Version(_version.incrementMinorVersion(preRelease));
+    Version incremented = withPreRelease(normal(major, next(minor), 0), preRelease);
+    return incremented != null
+        ? incremented
+        : new Version(version().incrementMinorVersion(preRelease).toString());
   }
 
   public Version incrementPatchVersion() {
-    return new Version(_version.incrementPatchVersion());
+    return normal(major, minor, next(patch));
   }
 
   public Version incrementPatchVersion(String preRelease) {
-    return new Version(_version.incrementPatchVersion(preRelease));
+    Version incremented = withPreRelease(normal(major, minor, next(patch)), preRelease);
+    return incremented != null
+        ? incremented
+        : new Version(version().incrementPatchVersion(preRelease).toString());
   }
 
+  /**
+   * Increments the last pre-release identifier if it is numeric or appends {@code .1}, and drops
+   * the build metadata, like the library does. Unlike the library's method, this does not modify
+   * any version.
+   */
   public Version incrementPreReleaseVersion() {
-    // the implementation of incrementPreReleaseVersion is broken,
-    // because it CHANGES the object it is called upon...
-    // That's why we perform another copy here
-    com.github.zafarkhaja.semver.Version _copy = com.github.zafarkhaja.semver.Version.valueOf(text);
+    if (isRelease()) {
+      // let the library explain what is wrong
+      version().incrementPreReleaseVersion();
+      throw new IllegalStateException("not a pre-release: " + text);
+    }
+
+    int end = build < 0 ? text.length() : build - 1;
+    int last = Math.max(preRelease, text.lastIndexOf('.', end - 1) + 1);
+    StringBuilder incremented = new StringBuilder(end + 4);
+    if (isInt(text, last, end)) {
+      incremented.append(text, 0, last).append(intValue(text, last, end) + 1);
+    } else {
+      incremented.append(text, 0, end).append(".1");
+    }
+    return VersionPool.SHARED.intern(
+        new Version(incremented.toString(), major, minor, patch, preRelease, -1));
+  }
 
-    return new Version(_copy.incrementPreReleaseVersion());
+  /** the number after {@code number} in this version, which must not overflow */
+  private int next(int number) {
+    if (number == Integer.MAX_VALUE) {
+      throw new IllegalStateException("cannot increment " + text + ", it is at the integer limit");
+    }
+    return number + 1;
+  }
+
+  private static Version normal(int major, int minor, int patch) {
+    return VersionPool.SHARED.intern(
+        new Version(major + "." + minor + "." + patch, major, minor, patch, -1, -1));
+  }
+
+  /** null if {@code preRelease} is invalid, the library will explain why */
+  private static Version withPreRelease(Version normal, String preRelease) {
+    String text = normal.text + '-' + preRelease;
+    Version parsed = preRelease != null ? TagParser.parse(text, 0, text.length()) : null;
+    if (parsed == null || parsed.build >= 0 || parsed.preRelease != normal.text.length() + 1) {
+      return null;
+    }
+    return VersionPool.SHARED.intern(parsed);
   }
 
   public int getMajorVersion() {
-    return _version.getMajorVersion();
+    return major;
   }
 
   public int getMinorVersion() {
-    return _version.getMinorVersion();
+    return minor;
   }
 
   public int getPatchVersion() {
-    return _version.getPatchVersion();
+    return patch;
   }
 
   public boolean isRelease() {
-    return _version.getPreReleaseVersion().isEmpty();
+    return preRelease < 0;
   }
 
   public boolean isSnapshot() {
@@ -82,39 +182,133 @@ public class Version implements Comparable<Version>, Serializable {
   }
 
   public Version getNormalVersion() {
-    return new Version(_version.getNormalVersion());
+    return isRelease() && build < 0 ? this : normal(major, minor, patch);
   }
 
   public String getPreReleaseVersion() {
-    return _version.getPreReleaseVersion();
+    return preRelease < 0 ? "" : text.substring(preRelease, build < 0 ? text.length() : build - 1);
   }
 
   public String getBuildMetadata() {
-    return _version.getBuildMetadata();
+    return build < 0 ? "" : text.substring(build);
   }
 
   public boolean greaterThan(Version other) {
-    return _version.greaterThan(other._version);
+    return compareTo(other) > 0;
   }
 
   public boolean greaterThanOrEqualTo(Version other) {
-    return _version.greaterThanOrEqualTo(other._version);
+    return compareTo(other) >= 0;
   }
 
   public boolean lessThan(Version other) {
-    return _version.lessThan(other._version);
+    return compareTo(other) < 0;
   }
 
   public boolean lessThanOrEqualTo(Version other) {
-    return _version.lessThanOrEqualTo(other._version);
+    return compareTo(other) <= 0;
   }
 
+  /** Same order as {@link com.github.zafarkhaja.semver.Version#compareTo} */
   public int compareTo(Version other) {
-    return _version.compareTo(other._version);
+    int result = Integer.compare(major, other.major);
+    if (result == 0) {
+      result = Integer.compare(minor, other.minor);
+    }
+    if (result == 0) {
+      result = Integer.compare(patch, other.patch);
+    }
+    if (result == 0) {
+      result = comparePreRelease(other);
+    }
+    return result;
+  }
+
+  private int comparePreRelease(Version other) {
+    if (isRelease() || other.isRelease()) {
+      return Boolean.compare(isRelease(), other.isRelease());
+    }
+
+    int end = build < 0 ? text.length() : build - 1;
+    int otherEnd = other.build < 0 ? other.text.length() : other.build - 1;
+    int i = preRelease;
+    int j = other.preRelease;
+    while (true) {
+      int identifierEnd = identifierEnd(text, i, end);
+      int otherIdentifierEnd = identifierEnd(other.text, j, otherEnd);
+
+      int result = compareIdentifiers(text, i, identifierEnd, other.text, j, otherIdentifierEnd);
+      if (result != 0) {
+        return result;
+      }
+
+      boolean more = identifierEnd < end;
+      boolean otherMore = otherIdentifierEnd < otherEnd;
+      if (!more || !otherMore) {
+        // the version with more identifiers is greater
+        return Boolean.compare(more, otherMore);
+      }
+      i = identifierEnd + 1;
+      j = otherIdentifierEnd + 1;
+    }
+  }
+
+  private static int identifierEnd(String text, int start, int end) {
+    int dot = text.indexOf('.', start);
+    return dot < 0 || dot > end ? end : dot;
+  }
+
+  private static int compareIdentifiers(
+      String a, int aStart, int aEnd, String b, int bStart, int bEnd) {
+    if (isInt(a, aStart, aEnd) && isInt(b, bStart, bEnd)) {
+      // same (overflowing) arithmetic as the library
+      return intValue(a, aStart, aEnd) - intValue(b, bStart, bEnd);
+    }
+
+    int length = Math.min(aEnd - aStart, bEnd - bStart);
+    for (int k = 0; k < length; k++) {
+      char ca = a.charAt(aStart + k);
+      char cb = b.charAt(bStart + k);
+      if (ca != cb) {
+        return ca - cb;
+      }
+    }
+    return (aEnd - aStart) - (bEnd - bStart);
+  }
+
+  /** whether {@link Integer#parseInt} accepts the identifier */
+  private static boolean isInt(String text, int start, int end) {
+    boolean negative = start < end && text.charAt(start) == '-';
+    int i = negative ? start + 1 : start;
+    if (i == end) {
+      return false;
+    }
+    long limit = negative ? -(long) Integer.MIN_VALUE : Integer.MAX_VALUE;
+    long value = 0;
+    for (; i < end; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return false;
+      }
+      value = value * 10 + (c - '0');
+      if (value > limit) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int intValue(String text, int start, int end) {
+    boolean negative = text.charAt(start) == '-';
+    long value = 0;
+    for (int i = negative ? start + 1 : start; i < end; i++) {
+      value = value * 10 + (text.charAt(i) - '0');
+    }
+    return (int) (negative ? -value : value);
   }
 
   public int compareWithBuildsTo(Version other) {
-    return _version.compareWithBuildsTo(other._version);
+    return version().compareWithBuildsTo(other.version());
   }
 
   @Override
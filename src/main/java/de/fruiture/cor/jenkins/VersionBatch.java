@@ -0,0 +1,252 @@
+package de.fruiture.cor.jenkins;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Calculates the next versions of many repositories concurrently.
+ *
+ * <p>Every repository is calculated on its own in the executor, so a slow or failing repository
+ * does not hold up the others. Reading tags and logs from local clones is limited to a number of
+ * repositories at a time, parsing is not.
+ */
+public final class VersionBatch {
+
+  /** A repository to calculate the version of. */
+  public abstract static class Source {
+    private final String name;
+    private final Supplier<VersionCalculator> calculator;
+
+    Source(String name, Supplier<VersionCalculator> calculator) {
+      this.name = name;
+      this.calculator = calculator;
+    }
+
+    /** a local clone, its tags are read from disk and its log from {@code git log} */
+    public static Source clone(
+        String name, Supplier<VersionCalculator> calculator, Path repository) {
+      return new Source(name, calculator) {
+        @Override
+        void read(VersionCalculator vc, Io io) throws IOException {
+          io.run(() -> vc.tags(repository));
+          io.run(() -> log(repository, vc));
+        }
+      };
+    }
+
+    /**
+     * Fetched output of {@link VersionCalculator#getGitFindTagsCommand()} and {@link
+     * VersionCalculator#getGitLogCommand()}
+     */
+    public static Source text(
+        String name, Supplier<VersionCalculator> calculator, String tags, String log) {
+      return new Source(name, calculator) {
+        @Override
+        void read(VersionCalculator vc, Io io) {
+          vc.tags(tags);
+          vc.messages(log);
+        }
+      };
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    abstract void read(VersionCalculator vc, Io io) throws IOException;
+  }
+
+  /** The outcome for one repository, either versions or a failure. */
+  public static final class Result {
+    private final String name;
+    private final Optional<String> referenceTag;
+    private final String nextVersion;
+    private final String nextVersionTag;
+    private final Throwable failure;
+
+    private Result(
+        String name,
+        Optional<String> referenceTag,
+        String nextVersion,
+        String nextVersionTag,
+        Throwable failure) {
+      this.name = name;
+      this.referenceTag = referenceTag;
+      this.nextVersion = nextVersion;
+      this.nextVersionTag = nextVersionTag;
+      this.failure = failure;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public Optional<String> getReferenceTag() {
+      return referenceTag;
+    }
+
+    /** null if failed */
+    public String getNextVersion() {
+      return nextVersion;
+    }
+
+    /** null if failed */
+    public String getNextVersionTag() {
+      return nextVersionTag;
+    }
+
+    public boolean isFailed() {
+      return failure != null;
+    }
+
+    /** null unless failed */
+    public Throwable getFailure() {
+      return failure;
+    }
+
+    @Override
+    public String toString() {
+      return name + ": " + (failure != null ? failure : nextVersionTag);
+    }
+  }
+
+  private final Executor executor;
+  private final Semaphore io;
+
+  /** @param ioLimit the number of repositories that may be read from disk at the same time */
+  public VersionBatch(Executor executor, int ioLimit) {
+    if (ioLimit < 1) {
+      throw new IllegalArgumentException("ioLimit must be positive: " + ioLimit);
+    }
+    this.executor = executor;
+    this.io = new Semaphore(ioLimit);
+  }
+
+  /** Uses the common fork-join pool. */
+  public VersionBatch(int ioLimit) {
+    this(ForkJoinPool.commonPool(), ioLimit);
+  }
+
+  /** Starts calculating a repository, the future never completes exceptionally. */
+  public CompletableFuture<Result> calculate(Source source) {
+    return CompletableFuture.supplyAsync(() -> run(source), executor)
+        .exceptionally(
+            e ->
+                new Result(
+                    source.getName(),
+                    Optional.empty(),
+                    null,
+                    null,
+                    e instanceof CompletionException && e.getCause() != null ? e.getCause() : e));
+  }
+
+  /** Starts calculating all repositories, by name in the order of the sources. */
+  public Map<String, CompletableFuture<Result>> calculate(Collection<? extends Source> sources) {
+    Map<String, CompletableFuture<Result>> results = new LinkedHashMap<>();
+    for (Source source : sources) {
+      if (results.put(source.getName(), calculate(source)) != null) {
+        throw new IllegalArgumentException("duplicate repository " + source.getName());
+      }
+    }
+    return results;
+  }
+
+  private Result run(Source source) {
+    VersionCalculator vc = source.calculator.get();
+    try {
+      source.read(vc, this::withPermit);
+    } catch (IOException e) {
+      throw new CompletionException(e);
+    }
+    return new Result(
+        source.getName(), vc.getReferenceTag(), vc.getNextVersion(), vc.getNextVersionTag(), null);
+  }
+
+  interface Io {
+    void run(IoTask task) throws IOException;
+  }
+
+  interface IoTask {
+    void run() throws IOException;
+  }
+
+  private void withPermit(IoTask task) throws IOException {
+    try {
+      // lets a fork-join pool add threads while this one waits
+      ForkJoinPool.managedBlock(
+          new ForkJoinPool.ManagedBlocker() {
+            private boolean acquired;
+
+            @Override
+            public boolean block() throws InterruptedException {
+              if (!acquired) {
+                io.acquire();
+                acquired = true;
+              }
+              return true;
+            }
+
+            @Override
+            public boolean isReleasable() {
+              return acquired || (acquired = io.tryAcquire());
+            }
+          });
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while waiting to read", e);
+    }
+    try {
+      task.run();
+    } finally {
+      io.release();
+    }
+  }
+
+  /**
+   * Runs {@link VersionCalculator#getGitLogArguments()} and streams its output into {@code vc}. Git
+   * is stopped as soon as {@code vc} needs no more of it.
+   */
+  static void log(Path repository, VersionCalculator vc) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add("git");
+    command.addAll(vc.getGitLogArguments());
+    Process git =
+        new ProcessBuilder(command)
+            .directory(repository.toFile())
+            .redirectError(ProcessBuilder.Redirect.INHERIT)
+            .start();
+    git.getOutputStream().close();
+    try (InputStream messages = git.getInputStream()) {
+      vc.messages(messages, StandardCharsets.UTF_8);
+      if (messages.read() >= 0) {
+        // stopped at a major change or a cache hit, the rest of the log does not matter
+        git.destroy();
+        return;
+      }
+    }
+    try {
+      int exit = git.waitFor();
+      if (exit != 0) {
+        throw new IOException("git log failed in " + repository + " with exit code " + exit);
+      }
+    } catch (InterruptedException e) {
+      git.destroy();
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while reading the log of " + repository, e);
+    }
+  }
+}
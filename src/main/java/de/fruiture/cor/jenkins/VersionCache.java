@@ -0,0 +1,206 @@
+package de.fruiture.cor.jenkins;
+
+import de.fruiture.cor.jenkins.VersioningStrategy.Change;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Small file that remembers the results of {@link VersionCalculator}s, so that builds of the same
+ * commit with the same tags can skip parsing tags and scanning messages.
+ *
+ * <p>The file holds at most {@code capacity} entries and evicts the least recently used one. It is
+ * always replaced atomically and all updates are serialized by a lock file, so several executors
+ * can share it. Hits only read the file: when an entry was last used is remembered in memory and
+ * written with the next new entry.
+ */
+public final class VersionCache {
+
+  public static final int DEFAULT_CAPACITY = 64;
+
+  private static final String HEADER = "cor-jenkins version cache 2";
+
+  /** file locks are held by the JVM, so threads need their own lock */
+  private static final ConcurrentMap<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+  /** when the entries of each file were last used, not yet written */
+  private static final ConcurrentMap<Path, ConcurrentMap<String, Long>> USED =
+      new ConcurrentHashMap<>();
+
+  /** milliseconds, but increasing with every use */
+  private static final AtomicLong CLOCK = new AtomicLong();
+
+  /** Results of a calculation */
+  static final class Entry {
+    final Optional<String> referenceTag;
+    final Change change;
+    final String nextVersion;
+
+    Entry(Optional<String> referenceTag, Change change, String nextVersion) {
+      this.referenceTag = referenceTag;
+      this.change = change;
+      this.nextVersion = nextVersion;
+    }
+  }
+
+  private final Path file;
+  private final int capacity;
+
+  public VersionCache(Path file, int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    this.file = file.toAbsolutePath().normalize();
+    this.capacity = capacity;
+  }
+
+  public VersionCache(Path file) {
+    this(file, DEFAULT_CAPACITY);
+  }
+
+  /** the entry for the key, which becomes the most recently used one, or null */
+  Entry get(String key) {
+    Entry entry;
+    try {
+      entry = read(new HashMap<>()).get(key);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (entry != null) {
+      used().put(key, now());
+    }
+    return entry;
+  }
+
+  void put(String key, Entry entry) {
+    ReentrantLock lock = LOCKS.computeIfAbsent(file, f -> new ReentrantLock());
+    lock.lock();
+    try {
+      Files.createDirectories(file.getParent());
+      try (FileChannel channel =
+          FileChannel.open(
+              file.resolveSibling(file.getFileName() + ".lock"),
+              StandardOpenOption.CREATE,
+              StandardOpenOption.WRITE)) {
+        // released when the channel is closed
+        channel.lock();
+        Map<String, Long> lastUsed = new HashMap<>();
+        LinkedHashMap<String, Entry> entries = read(lastUsed);
+        ConcurrentMap<String, Long> used = used();
+        for (Map.Entry<String, Long> use : used.entrySet()) {
+          lastUsed.merge(use.getKey(), use.getValue(), Math::max);
+          used.remove(use.getKey(), use.getValue());
+        }
+        entries.remove(key);
+        entries.put(key, entry);
+        lastUsed.put(key, now());
+        while (entries.size() > capacity) {
+          String eldest = null;
+          for (String k : entries.keySet()) {
+            if (eldest == null
+                || lastUsed.getOrDefault(k, 0L) < lastUsed.getOrDefault(eldest, 0L)) {
+              eldest = k;
+            }
+          }
+          entries.remove(eldest);
+        }
+        write(format(entries, lastUsed));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private ConcurrentMap<String, Long> used() {
+    return USED.computeIfAbsent(file, f -> new ConcurrentHashMap<>());
+  }
+
+  private static long now() {
+    return CLOCK.updateAndGet(last -> Math.max(last + 1, System.currentTimeMillis()));
+  }
+
+  /** the entries in the file, and when they were last used into {@code lastUsed} */
+  private LinkedHashMap<String, Entry> read(Map<String, Long> lastUsed) throws IOException {
+    LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      if (!HEADER.equals(reader.readLine())) {
+        return entries;
+      }
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length != 5) {
+          // damaged, start over
+          entries.clear();
+          break;
+        }
+        entries.put(
+            fields[0],
+            new Entry(
+                fields[1].isEmpty() ? Optional.empty() : Optional.of(fields[1]),
+                Change.valueOf(fields[2]),
+                fields[3]));
+        lastUsed.put(fields[0], Long.parseLong(fields[4]));
+      }
+    } catch (NoSuchFileException e) {
+      // nothing cached yet
+    } catch (IllegalArgumentException e) {
+      entries.clear();
+    }
+    return entries;
+  }
+
+  private static String format(Map<String, Entry> entries, Map<String, Long> lastUsed) {
+    StringBuilder text = new StringBuilder(HEADER).append('\n');
+    for (Map.Entry<String, Entry> e : entries.entrySet()) {
+      Entry entry = e.getValue();
+      text.append(e.getKey())
+          .append('\t')
+          .append(entry.referenceTag.orElse(""))
+          .append('\t')
+          .append(entry.change.name())
+          .append('\t')
+          .append(entry.nextVersion)
+          .append('\t')
+          .append(lastUsed.getOrDefault(e.getKey(), 0L))
+          .append('\n');
+    }
+    return text.toString();
+  }
+
+  private void write(String text) throws IOException {
+    Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+    try {
+      try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+        writer.write(text);
+      }
+      try {
+        Files.move(
+            temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temporary);
+    }
+  }
+}
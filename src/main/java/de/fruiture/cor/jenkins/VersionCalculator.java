@@ -1,18 +1,41 @@
 package de.fruiture.cor.jenkins;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Reader;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
-import java.util.SortedSet;
-import java.util.TreeSet;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class VersionCalculator implements Serializable {
+  private static final long serialVersionUID = 1L;
 
-  public static final Version START = new Version("0.0.0");
+  public static final Version START = Version.valueOf("0.0.0");
+
+  static final int MESSAGES_BUFFER_SIZE = 8192;
+
+  static final int RECENT_TAGS = 16;
 
   public static VersionCalculator snapshot(String prefix) {
     return new VersionCalculator(new VersioningStrategy.Snapshot(), prefix);
@@ -33,11 +56,47 @@ public class VersionCalculator implements Serializable {
   private final VersioningStrategy strategy;
   private final String prefix;
 
-  private final SortedSet<Version> versions = new TreeSet<>();
+  private final VersionStore releases = new VersionStore();
+  private final VersionStore snapshots = new VersionStore();
+
+  private boolean conventionalCommits;
+
+  /** the number of tags listed by {@link #getGitFindRecentTagsCommand()} */
+  private int recentTags = RECENT_TAGS;
+
+  private long triggerBudgetSteps = TriggerScanner.DEFAULT_BUDGET_STEPS;
+  private long triggerBudgetMillis = TriggerScanner.DEFAULT_BUDGET_MILLIS;
+
+  private transient TriggerScanner triggerScanner;
+  private transient Optional<String> referenceTag;
+  private transient String nextVersion;
+  /** what the messages of conventional commits amounted to so far, or null */
+  private transient ConventionalCommits commits;
+
+  private transient VersionCache cache;
+  private transient String head;
+  /** digests of the deferred tag inputs, which are only parsed if the cache misses */
+  private transient StringBuilder tagsDigest;
 
-  private List<Pattern> triggerMinorChange =
+  /** tags not parsed yet, they are serialized as they are */
+  private List<Ingestion> pending;
+
+  private transient CalculatorMetrics metrics;
+
+  private VersionReservations reservations;
+  private String reservationScope;
+  /** the version reserved by this calculator, or null */
+  private Version reserved;
+  /** the calculated version {@link #reserved} was reserved for */
+  private Version reservedFor;
+
+  private transient String cacheKey;
+  private transient VersionCache.Entry cacheEntry;
+
+  // serialized as sources and flags by writeObject()
+  private transient List<Pattern> triggerMinorChange =
       Collections.singletonList(Pattern.compile("CHANGE:MINOR"));
-  private List<Pattern> triggerMajorChange =
+  private transient List<Pattern> triggerMajorChange =
       Collections.singletonList(Pattern.compile("CHANGE:MAJOR"));
 
   public VersionCalculator(VersioningStrategy strategy, String prefix) {
@@ -50,78 +109,806 @@ public class VersionCalculator implements Serializable {
     this(strategy, null);
   }
 
+  /**
+   * Looks up the results in {@code cache} before parsing any tags or messages. Entries are keyed by
+   * the {@code head} commit, the tags and the triggers, so the messages must be those of {@link
+   * #getGitLogCommand()}. Must be called before the tags are passed in.
+   */
+  public void useCache(VersionCache cache, String head) {
+    if (!releases.isEmpty() || !snapshots.isEmpty() || pending != null) {
+      throw new IllegalStateException("the cache must be set before the tags");
+    }
+    this.cache = cache;
+    this.head = head;
+    this.tagsDigest = new StringBuilder();
+    this.pending = new ArrayList<>();
+  }
+
+  /** Records counters and timers in {@code metrics}, null to stop. They are not serialized. */
+  public void useMetrics(CalculatorMetrics metrics) {
+    this.metrics = metrics;
+    this.triggerScanner = null;
+    this.commits = null;
+  }
+
+  public CalculatorMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Makes {@link #getNextVersion()} reserve the version, so that concurrent builds of the same
+   * {@code repository} with the same prefix get distinct versions. Call {@link
+   * #releaseReservation()} if the build fails.
+   */
+  public void useReservations(VersionReservations reservations, String repository) {
+    releaseReservation();
+    this.reservations = reservations;
+    this.reservationScope = repository + '\n' + (prefix != null ? prefix : "");
+    invalidate();
+  }
+
+  boolean usesReservations() {
+    return reservations != null;
+  }
+
+  /** Gives the reserved version back, to be used by the next build. */
+  public void releaseReservation() {
+    if (reserved != null) {
+      reservations.release(reservationScope, reserved);
+      reserved = null;
+      reservedFor = null;
+      nextVersion = null;
+    }
+  }
+
   void tags(String foundGitTags) {
-    Pattern p =
-        prefix != null
-            ? Pattern.compile(Pattern.quote(prefix) + "(\\d+.\\d+\\.\\d+\\S*)")
-            : Pattern.compile("(\\d+.\\d+\\.\\d+\\S*)");
-
-    Matcher matcher = p.matcher(foundGitTags);
-    while (matcher.find()) {
-      String v = matcher.group(1);
-      try {
-        versions.add(new Version(v));
-      } catch (Exception ignored) {
-        // ignore
+    if (!defer("tags", foundGitTags, new ParseTags(foundGitTags))) {
+      parseTags(foundGitTags);
+      invalidate();
+    }
+  }
+
+  private void parseTags(String foundGitTags) {
+    scanTags(new TagParser(prefix), foundGitTags, 0, foundGitTags.length(), this::addVersion);
+  }
+
+  private void scanTags(
+      TagParser parser, CharSequence text, int start, int end, TagParser.Sink sink) {
+    if (metrics == null) {
+      parser.scan(text, start, end, sink);
+    } else {
+      long started = System.nanoTime();
+      int seen = parser.scan(text, start, end, sink);
+      metrics.tags(seen, System.nanoTime() - started);
+    }
+  }
+
+  /**
+   * Reads the output of {@link #getGitFindTagsCommand()} line by line, so only a single line is
+   * buffered at a time. A tag never spans a line break, which is why this yields the same versions
+   * as {@link #tags(String)} on the complete output.
+   *
+   * <p>With a cache, the tags are parsed right away, while the text is added to the cache key.
+   */
+  void tags(Reader foundGitTags) throws IOException {
+    ingestPending();
+    if (cache != null) {
+      digestTags(foundGitTags);
+      return;
+    }
+
+    BufferedReader reader =
+        foundGitTags instanceof BufferedReader
+            ? (BufferedReader) foundGitTags
+            : new BufferedReader(foundGitTags);
+    TagParser parser = new TagParser(prefix);
+    String line;
+    while ((line = reader.readLine()) != null) {
+      scanTags(parser, line, 0, line.length(), this::addVersion);
+    }
+    invalidate();
+  }
+
+  /** Parses the tags in chunks and digests them like {@link #defer} does their complete text. */
+  private void digestTags(Reader foundGitTags) throws IOException {
+    MessageDigest digest = digest("tags");
+    CharsetEncoder encoder =
+        StandardCharsets.UTF_8
+            .newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    CharBuffer chars = CharBuffer.allocate(8192);
+    ByteBuffer bytes = ByteBuffer.allocate(3 * chars.capacity());
+    TagParser parser = new TagParser(prefix);
+    // the characters after the last line break, which may continue a tag
+    StringBuilder line = new StringBuilder();
+
+    int carry = 0;
+    boolean end = false;
+    while (!end) {
+      end = foundGitTags.read(chars) < 0;
+      chars.flip();
+      int lines = chars.limit();
+      while (!end && lines > carry && chars.get(lines - 1) != '\n') {
+        lines--;
+      }
+      if (lines > carry || end) {
+        line.append(chars, carry, lines);
+        scanTags(parser, line, 0, line.length(), this::addVersion);
+        line.setLength(0);
+        carry = lines;
+      }
+      line.append(chars, carry, chars.limit());
+
+      // the first half of a surrogate pair split by the read is carried over
+      encoder.encode(chars, bytes, end);
+      if (end) {
+        encoder.flush(bytes);
       }
+      bytes.flip();
+      digest.update(bytes);
+      bytes.clear();
+      chars.compact();
+      carry = chars.position();
     }
+
+    remember(digest);
+    invalidate();
+  }
+  /**
+   * Reads the output of {@link #getGitFindRecentTagsCommand()}. Returns false if the tags listed
+   * are not enough to tell the reference tag, then the command lists twice as many tags and must be
+   * run again.
+   *
+   * <p>Git sorts the tags by their versions, so all tags that were not listed are less than those
+   * that were. If a release is among the listed tags, neither an older release nor a snapshot
+   * before it can matter.
+   */
+  boolean recentTags(String foundGitTags) {
+    int lines = 0;
+    for (int i = 0; i < foundGitTags.length(); i++) {
+      if (foundGitTags.charAt(i) == '\n') {
+        lines++;
+      }
+    }
+    if (!foundGitTags.isEmpty() && foundGitTags.charAt(foundGitTags.length() - 1) != '\n') {
+      lines++;
+    }
+
+    int[] line = strategy.lineVersion();
+    boolean[] release = new boolean[1];
+    TagParser.Sink sink =
+        (text, start, end, major, minor, patch, preRelease, build) ->
+            release[0] |=
+                preRelease < 0
+                    && (line == null || (major == line[0] && (line[1] < 0 || minor == line[1])));
+    if (cache == null) {
+      ingestPending();
+      scanTags(
+          new TagParser(prefix),
+          foundGitTags,
+          0,
+          foundGitTags.length(),
+          (text, start, end, major, minor, patch, preRelease, build) -> {
+            sink.version(text, start, end, major, minor, patch, preRelease, build);
+            addVersion(text, start, end, major, minor, patch, preRelease, build);
+          });
+      invalidate();
+    } else {
+      new TagParser(prefix).scan(foundGitTags, 0, foundGitTags.length(), sink);
+    }
+
+    if (lines < recentTags || release[0]) {
+      if (cache != null) {
+        tags(foundGitTags);
+      }
+      return true;
+    }
+    recentTags = (int) Math.min(Integer.MAX_VALUE, 2L * recentTags);
+    return false;
+  }
+
+  /** Reads tags from a part of a longer text, the output of a command shared with others. */
+  void tags(CharSequence foundGitTags, int start, int end) {
+    if (cache != null) {
+      tags(foundGitTags.subSequence(start, end).toString());
+    } else {
+      ingestPending();
+      scanTags(new TagParser(prefix), foundGitTags, start, end, this::addVersion);
+      invalidate();
+    }
+  }
+
+  void tags(InputStream foundGitTags, Charset charset) throws IOException {
+    tags(new InputStreamReader(foundGitTags, charset));
+  }
+
+  /**
+   * Reads the tags merged into HEAD directly from the repository at {@code repository}, with the
+   * same result as {@link #getGitFindTagsCommand()} but without running git.
+   */
+  void tags(Path repository) throws IOException {
+    GitRefs refs = new GitRefs(repository);
+    List<String> names = new ArrayList<>();
+    List<String> objectIds = new ArrayList<>();
+    StringBuilder digested = new StringBuilder();
+    refs.tags(
+        linePrefix(),
+        (name, objectId) -> {
+          if (objectId != null) {
+            names.add(name.toString());
+            objectIds.add(objectId);
+            digested.append(name).append(' ').append(objectId).append('\n');
+          }
+        });
+
+    if (!defer("refs", digested, new MergedTags(repository, names, objectIds))) {
+      mergedTags(refs, names, objectIds);
+      invalidate();
+    }
+  }
+
+  private void mergedTags(GitRefs refs, List<String> names, List<String> objectIds)
+      throws IOException {
+    TagParser parser = new TagParser(prefix);
+    try (Ancestry ancestry = Ancestry.open(refs)) {
+      for (int i = 0; i < names.size(); i++) {
+        String name = names.get(i);
+        String objectId = objectIds.get(i);
+        scanTags(
+            parser,
+            name,
+            0,
+            name.length(),
+            (text, start, end, major, minor, patch, preRelease, build) -> {
+              try {
+                if (ancestry.reaches(objectId)) {
+                  addVersion(text, start, end, major, minor, patch, preRelease, build);
+                }
+              } catch (IOException e) {
+                throw new UncheckedIOException(e);
+              }
+            });
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  public void addTag(String tag) {
+    applyDelta(Collections.singleton(tag), Collections.emptySet());
+  }
+
+  public void removeTag(String tag) {
+    applyDelta(Collections.emptySet(), Collections.singleton(tag));
+  }
+
+  /**
+   * Updates the tags that were passed in by the ones created and deleted since, in time
+   * proportional to the number of changed tags rather than all of them.
+   */
+  public void applyDelta(Collection<String> added, Collection<String> removed) {
+    StringBuilder delta = new StringBuilder();
+    if (cache != null) {
+      removed.forEach(tag -> delta.append('-').append(tag).append('\n'));
+      added.forEach(tag -> delta.append('+').append(tag).append('\n'));
+    }
+    if (!defer("delta", delta, new UpdateTags(added, removed))) {
+      updateTags(added, removed);
+      invalidate();
+    }
+  }
+
+  private void updateTags(Collection<String> added, Collection<String> removed) {
+    TagParser parser = new TagParser(prefix);
+    for (String tag : removed) {
+      parser.scan(
+          tag,
+          0,
+          tag.length(),
+          (Version v) -> (v.getPreReleaseVersion().isEmpty() ? releases : snapshots).remove(v));
+    }
+    for (String tag : added) {
+      scanTags(parser, tag, 0, tag.length(), this::addVersion);
+    }
+  }
+
+  /** Applies the tags created and deleted in the repository to this calculator. */
+  public TagListener tagListener() {
+    return this::applyDelta;
+  }
+
+  /** deferred processing of tags */
+  private interface Ingestion extends Serializable {
+    void run(VersionCalculator vc) throws IOException;
+  }
+
+  private static final class ParseTags implements Ingestion {
+    private static final long serialVersionUID = 1L;
+
+    private final String tags;
+
+    ParseTags(String tags) {
+      this.tags = tags;
+    }
+
+    @Override
+    public void run(VersionCalculator vc) {
+      vc.parseTags(tags);
+    }
+  }
+
+  /** the tags of a repository, to be read where it is */
+  private static final class MergedTags implements Ingestion {
+    private static final long serialVersionUID = 1L;
+
+    private final String repository;
+    private final List<String> names;
+    private final List<String> objectIds;
+
+    MergedTags(Path repository, List<String> names, List<String> objectIds) {
+      this.repository = repository.toString();
+      this.names = names;
+      this.objectIds = objectIds;
+    }
+
+    @Override
+    public void run(VersionCalculator vc) throws IOException {
+      vc.mergedTags(new GitRefs(Paths.get(repository)), names, objectIds);
+    }
+  }
+
+  private static final class UpdateTags implements Ingestion {
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> added;
+    private final List<String> removed;
+
+    UpdateTags(Collection<String> added, Collection<String> removed) {
+      this.added = new ArrayList<>(added);
+      this.removed = new ArrayList<>(removed);
+    }
+
+    @Override
+    public void run(VersionCalculator vc) {
+      vc.updateTags(added, removed);
+    }
+  }
+
+  /** Remembers the tags for later if a cache is used, returns false if they must be read now. */
+  private boolean defer(String source, CharSequence content, Ingestion ingestion) {
+    if (cache == null) {
+      // those of a deserialized calculator come first
+      ingestPending();
+      return false;
+    }
+    MessageDigest digest = digest(source);
+    digest.update(StandardCharsets.UTF_8.encode(CharBuffer.wrap(content)));
+    remember(digest);
+    pending.add(ingestion);
+    invalidate();
+    return true;
+  }
+
+  /** a digest of tags read from {@code source} for the cache key, their text is still missing */
+  private static MessageDigest digest(String source) {
+    MessageDigest digest = sha256();
+    digest.update(source.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+    return digest;
+  }
+
+  /** Adds tags to the cache key. */
+  private void remember(MessageDigest digest) {
+    tagsDigest.append(GitObjects.hex(digest.digest())).append('\n');
+    cacheKey = null;
+    cacheEntry = null;
+  }
+
+  private void ingestPending() {
+    if (pending == null || pending.isEmpty()) {
+      return;
+    }
+    try {
+      for (Ingestion ingestion : pending) {
+        ingestion.run(this);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      pending.clear();
+    }
+  }
+
+  /** the cached results or null */
+  private VersionCache.Entry cached() {
+    if (cache == null) {
+      return null;
+    }
+    if (cacheKey == null) {
+      cacheKey = cacheKey();
+      cacheEntry = cache.get(cacheKey);
+      if (cacheEntry != null) {
+        change(cacheEntry.change);
+      }
+    }
+    return cacheEntry;
+  }
+
+  private String cacheKey() {
+    StringBuilder key = new StringBuilder();
+    key.append(strategy.getClass().getName()).append('\n');
+    key.append(strategy.change).append('\n');
+    key.append(strategy.getLine()).append('\n');
+    key.append(conventionalCommits).append('\n');
+    key.append(prefix).append('\n');
+    key.append(head).append('\n');
+    for (Pattern p : triggerMinorChange) {
+      key.append("minor ").append(p.flags()).append(' ').append(p.pattern()).append('\n');
+    }
+    for (Pattern p : triggerMajorChange) {
+      key.append("major ").append(p.flags()).append(' ').append(p.pattern()).append('\n');
+    }
+    key.append(tagsDigest);
+    return GitObjects.hex(sha256().digest(key.toString().getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void addVersion(
+      CharSequence text,
+      int start,
+      int end,
+      int major,
+      int minor,
+      int patch,
+      int preRelease,
+      int build) {
+    if (metrics != null) {
+      metrics.tagAccepted();
+    }
+    (preRelease < 0 ? releases : snapshots)
+        .add(text, start, end, major, minor, patch, preRelease, build);
+  }
+
+  private void invalidate() {
+    referenceTag = null;
+    nextVersion = null;
   }
 
   private Optional<Version> lastRelease() {
-    return versions.stream().filter(Version::isRelease).reduce(VersionCalculator::last);
+    return Optional.ofNullable(last(releases));
   }
 
+  /** the greatest version of the maintenance line, if there is one */
+  private Version last(VersionStore store) {
+    int[] line = strategy.lineVersion();
+    return line == null ? store.last() : store.lastInLine(line[0], line[1]);
+  }
+
+  /** the last release, or the first version of the maintenance line if it has none yet */
   private Version getBaseline() {
-    return lastRelease().orElse(START);
+    int[] line = strategy.lineVersion();
+    return lastRelease()
+        .orElseGet(
+            () ->
+                line == null
+                    ? START
+                    : Version.valueOf(line[0] + "." + Math.max(line[1], 0) + ".0"));
   }
 
   private Optional<Version> lastSnapAfter(Version baseline) {
-    return versions
-        .stream()
-        .filter(Version::isSnapshot)
-        .filter(v -> v.greaterThan(baseline))
-        .reduce(VersionCalculator::last);
+    return Optional.ofNullable(last(snapshots)).filter(s -> s.greaterThan(baseline));
   }
 
   public Optional<String> getReferenceTag() {
-    Optional<Version> best = lastRelease().map(r -> lastSnapAfter(r).orElse(r));
+    if (referenceTag == null && cached() != null) {
+      referenceTag = cacheEntry.referenceTag;
+    } else if (referenceTag == null) {
+      ingestPending();
+      Optional<Version> best = lastRelease().map(r -> lastSnapAfter(r).orElse(r));
 
-    if (!best.isPresent()) {
-      best = lastSnapAfter(START);
+      if (!best.isPresent()) {
+        best = lastSnapAfter(START);
+      }
+
+      referenceTag = best.map(Version::toString).map(this::prefixed);
     }
+    return referenceTag;
+  }
 
-    return best.map(Version::toString).map(this::prefixed);
+  /**
+   * The tag of the greatest release or snapshot that satisfies a semver {@code expression}, like
+   * {@code ">=1.4.0 & <1.5.0"} or {@code "1.4.*"}.
+   */
+  public Optional<String> latestMatching(String expression) {
+    VersionQuery query = VersionQuery.of(expression);
+    ingestPending();
+    Version release = releases.lastMatching(query);
+    Version snapshot = snapshots.lastMatching(query);
+    Version latest =
+        release == null || (snapshot != null && snapshot.greaterThan(release)) ? snapshot : release;
+    return Optional.ofNullable(latest).map(Version::toString).map(this::prefixed);
+  }
+
+  /** The tag of the greatest release that satisfies a semver {@code expression}. */
+  public Optional<String> latestReleaseMatching(String expression) {
+    VersionQuery query = VersionQuery.of(expression);
+    ingestPending();
+    return Optional.ofNullable(releases.lastMatching(query))
+        .map(Version::toString)
+        .map(this::prefixed);
   }
 
   public String getNextVersion() {
+    if (nextVersion == null) {
+      String calculated = calculateNextVersion();
+      if (reservations != null) {
+        Version candidate = Version.valueOf(calculated);
+        // new tags or messages often leave the version as it is, then so is the reservation
+        if (!candidate.equals(reservedFor)) {
+          releaseReservation();
+          reserved = reservations.reserve(reservationScope, candidate, strategy::successor);
+          reservedFor = candidate;
+        }
+        calculated = reserved.toString();
+      }
+      nextVersion = calculated;
+    }
+    return nextVersion;
+  }
+
+  private String calculateNextVersion() {
+    if (cached() != null) {
+      return cacheEntry.nextVersion;
+    }
+    ingestPending();
+    long started = metrics != null ? System.nanoTime() : 0;
     Version baseline = getBaseline();
-    return strategy.getNextVersion(baseline, lastSnapAfter(baseline).orElse(null)).toString();
+    Version snapshot = lastSnapAfter(lastRelease().orElse(START)).orElse(null);
+    String next = strategy.next(baseline, snapshot).toString();
+    if (metrics != null) {
+      metrics.nextVersion(System.nanoTime() - started);
+    }
+    if (cache != null) {
+      cache.put(cacheKey, new VersionCache.Entry(getReferenceTag(), strategy.change, next));
+    }
+    return next;
   }
 
+  /** Ignored if the results are cached. */
   public void messages(String messages) {
-    if (!messages.trim().isEmpty()) {
-      strategy.patchChange();
+    if (cached() != null) {
+      return;
     }
-    if (triggerMinorChange.stream().anyMatch(p -> p.matcher(messages).find())) {
-      strategy.minorChange();
+    invalidate();
+    if (conventionalCommits) {
+      commits().scan(messages);
+      change(commits.getChange());
+    } else {
+      change(triggerScanner().scan(messages));
+    }
+  }
+
+  /**
+   * Reads the output of {@link #getGitLogCommand()} in chunks of {@link #MESSAGES_BUFFER_SIZE}
+   * characters and stops reading once a major change is detected.
+   */
+  public void messages(Reader messages) throws IOException {
+    if (cached() != null) {
+      return;
+    }
+    invalidate();
+    if (conventionalCommits) {
+      commits().scan(messages, MESSAGES_BUFFER_SIZE);
+      change(commits.getChange());
+    } else {
+      change(triggerScanner().scan(messages, MESSAGES_BUFFER_SIZE));
+    }
+  }
+
+  private ConventionalCommits commits() {
+    if (commits == null) {
+      commits = new ConventionalCommits(triggerScanner());
+    }
+    return commits;
+  }
+
+  /**
+   * Classifies the messages as <a href="https://www.conventionalcommits.org/">Conventional
+   * Commits</a>, in addition to the change keywords. {@link #getGitLogCommand()} then lists every
+   * commit with its hash and full message.
+   */
+  public void setConventionalCommits(boolean conventionalCommits) {
+    this.conventionalCommits = conventionalCommits;
+    this.commits = null;
+    this.cacheKey = null;
+    this.cacheEntry = null;
+    invalidate();
+  }
+
+  public boolean isConventionalCommits() {
+    return conventionalCommits;
+  }
+
+  /** Refuses calculators that a {@link HistoryReplay} cannot start from. */
+  void startReplay() {
+    if (!releases.isEmpty()
+        || !snapshots.isEmpty()
+        || pending != null
+        || reservations != null
+        || strategy.change != VersioningStrategy.Change.PATCH) {
+      throw new IllegalStateException(
+          "a replay needs a calculator without tags, messages, cache or reservations");
+    }
+  }
+
+  /** Forgets the change level of the messages so far, they are before a new reference tag. */
+  void resetChange() {
+    strategy.change = VersioningStrategy.Change.PATCH;
+    commits = null;
+    invalidate();
+  }
+
+  /**
+   * The hash of the commit whose message caused the change level, if conventional commits are used.
+   * It is not known if the results are cached.
+   */
+  public Optional<String> getChangeCommit() {
+    return Optional.ofNullable(commits).map(ConventionalCommits::getCommit);
+  }
+
+  public void messages(InputStream messages, Charset charset) throws IOException {
+    messages(new InputStreamReader(messages, charset));
+  }
+
+  /**
+   * Applies the change level of messages that were scanned elsewhere, like {@link #messages} would.
+   */
+  void messages(VersioningStrategy.Change change) {
+    if (cached() != null) {
+      return;
+    }
+    invalidate();
+    change(change);
+  }
+
+  /**
+   * Applies the change level of conventional commits that were classified elsewhere, and the hash
+   * of the commit that caused it for {@link #getChangeCommit()}.
+   */
+  void messages(VersioningStrategy.Change change, String commit) {
+    if (cached() != null) {
+      return;
     }
-    if (triggerMajorChange.stream().anyMatch(p -> p.matcher(messages).find())) {
+    invalidate();
+    commits().add(change, commit);
+    change(commits.getChange());
+  }
+
+  TriggerScanner triggerScanner() {
+    if (triggerScanner == null) {
+      triggerScanner =
+          new TriggerScanner(
+              triggerMinorChange,
+              triggerMajorChange,
+              metrics,
+              triggerBudgetSteps,
+              triggerBudgetMillis);
+    }
+    return triggerScanner;
+  }
+
+  private void change(VersioningStrategy.Change change) {
+    if (change == VersioningStrategy.Change.MAJOR) {
       strategy.majorChange();
+    } else if (change == VersioningStrategy.Change.MINOR) {
+      strategy.minorChange();
+    } else if (change == VersioningStrategy.Change.PATCH) {
+      strategy.patchChange();
     }
   }
 
+  String getPrefix() {
+    return prefix;
+  }
+
   private String prefixed(String v) {
     return prefix != null ? prefix + v : v;
   }
 
   public String getGitFindTagsCommand() {
-    return prefix != null
-        ? ("tag -l --merged HEAD '" + prefixed("*") + "'")
-        : "tag -l --merged HEAD";
+    String pattern = linePrefix();
+    return pattern != null ? ("tag -l --merged HEAD '" + pattern + "*'") : "tag -l --merged HEAD";
+  }
+
+  /**
+   * Like {@link #getGitFindTagsCommand()}, but lists only the tags with the greatest versions, see
+   * {@link #recentTags(String)}.
+   */
+  public String getGitFindRecentTagsCommand() {
+    String pattern = linePrefix();
+    return "for-each-ref --merged HEAD --sort=-v:refname --count="
+        + recentTags
+        + " --format='%(refname:strip=2)' "
+        + (pattern != null ? "'refs/tags/" + pattern + "*'" : "refs/tags");
+  }
+
+  /** the start of the tags of the maintenance line or the prefix, or null */
+  private String linePrefix() {
+    return strategy.getLine() != null ? prefixed(strategy.getLine() + ".") : prefix;
+  }
+
+  /**
+   * Binds the calculator to a maintenance line, a major or major.minor version like {@code "1.4"},
+   * or null for none. Only the line's tags are considered and the next version must stay in it.
+   */
+  public void setMaintenanceLine(String line) {
+    strategy.setLine(line);
+    this.cacheKey = null;
+    this.cacheEntry = null;
+    invalidate();
+  }
+
+  public String getMaintenanceLine() {
+    return strategy.getLine();
   }
 
   public String getGitLogCommand() {
-    return "log --pretty=oneline " + getGitLogVersionRange();
+    return shellCommand(getGitLogArguments());
+  }
+
+  /** The arguments of {@link #getGitLogCommand()}, to run git without a shell. */
+  public List<String> getGitLogArguments() {
+    return Arrays.asList(
+        "log",
+        conventionalCommits ? ConventionalCommits.LOG_FORMAT : "--pretty=oneline",
+        getGitLogVersionRange());
+  }
+
+  /** the arguments for a shell, quoted where needed */
+  static String shellCommand(List<String> arguments) {
+    StringBuilder command = new StringBuilder();
+    for (String argument : arguments) {
+      if (command.length() > 0) {
+        command.append(' ');
+      }
+      if (argument.matches("[\\w\\-.,:=%+@^~/]+")) {
+        command.append(argument);
+      } else {
+        command.append('\'').append(argument.replace("'", "'\\''")).append('\'');
+      }
+    }
+    return command.toString();
+  }
+
+  /**
+   * Like {@link #getGitLogCommand()}, but lets git select the commits that can contain a change
+   * keyword, so that less output is transferred. Passing the outputs of the commands, joined by
+   * line breaks, to {@link #messages} gives the same next version. This is a single command for the
+   * full log if a keyword cannot be expressed for {@code git log --grep}, or for conventional
+   * commits.
+   */
+  public List<String> getGitLogCommands() {
+    return getGitLogArgumentLists()
+        .stream()
+        .map(VersionCalculator::shellCommand)
+        .collect(Collectors.toList());
+  }
+
+  /** The arguments of each of {@link #getGitLogCommands()}, to run git without a shell. */
+  public List<List<String>> getGitLogArgumentLists() {
+    List<List<String>> commands =
+        conventionalCommits
+            ? null
+            : LogFilter.commands(getGitLogVersionRange(), triggerMinorChange, triggerMajorChange);
+    return commands != null ? commands : Collections.singletonList(getGitLogArguments());
   }
 
   public String getGitLogVersionRange() {
@@ -146,6 +933,11 @@ public class VersionCalculator implements Serializable {
 
   public void setTriggerMinorChange(List<?> triggerMinorChange) {
     this.triggerMinorChange = patterns(triggerMinorChange);
+    this.triggerScanner = null;
+    this.commits = null;
+    this.cacheKey = null;
+    this.cacheEntry = null;
+    invalidate();
   }
 
   private static List<Pattern> patterns(List<?> rawList) {
@@ -168,9 +960,72 @@ public class VersionCalculator implements Serializable {
 
   public void setTriggerMajorChange(List<?> triggerMajorChange) {
     this.triggerMajorChange = patterns(triggerMajorChange);
+    this.triggerScanner = null;
+    this.commits = null;
+    this.cacheKey = null;
+    this.cacheEntry = null;
+    invalidate();
+  }
+
+  /**
+   * Limits the triggers that cannot be searched in linear time, like those with anchors or back
+   * references, to reading {@code steps} characters and taking {@code millis} milliseconds per
+   * search in a text or chunk of the messages. A trigger that exceeds the budget fails the
+   * calculation with an {@link IllegalStateException}. The default is 100 million characters and 10
+   * seconds.
+   */
+  public void setTriggerBudget(long steps, long millis) {
+    if (steps <= 0 || millis <= 0) {
+      throw new IllegalArgumentException("budget must be positive: " + steps + ", " + millis);
+    }
+    this.triggerBudgetSteps = steps;
+    this.triggerBudgetMillis = millis;
+    this.triggerScanner = null;
+    this.commits = null;
   }
 
-  private static <T> T last(T a, T b) {
-    return b;
+  public long getTriggerBudgetSteps() {
+    return triggerBudgetSteps;
+  }
+
+  public long getTriggerBudgetMillis() {
+    return triggerBudgetMillis;
+  }
+
+  /** Deferred tags stay deferred, the cache itself is not serialized. */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    out.defaultWriteObject();
+    writePatterns(out, triggerMinorChange);
+    writePatterns(out, triggerMajorChange);
+  }
+
+  private static void writePatterns(ObjectOutputStream out, List<Pattern> patterns)
+      throws IOException {
+    out.writeInt(patterns.size());
+    for (Pattern p : patterns) {
+      // writeUTF() is limited to 64 KB
+      out.writeInt(p.pattern().length());
+      out.writeChars(p.pattern());
+      out.writeInt(p.flags());
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    triggerMinorChange = readPatterns(in);
+    triggerMajorChange = readPatterns(in);
+  }
+
+  private static List<Pattern> readPatterns(ObjectInputStream in) throws IOException {
+    int size = in.readInt();
+    List<Pattern> patterns = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      char[] pattern = new char[in.readInt()];
+      for (int c = 0; c < pattern.length; c++) {
+        pattern[c] = in.readChar();
+      }
+      patterns.add(Pattern.compile(new String(pattern), in.readInt()));
+    }
+    return patterns;
   }
 }
@@ -0,0 +1,86 @@
+package de.fruiture.cor.jenkins;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded set of {@link Version}s by their text, so that calculators in the same JVM share
+ * instances instead of parsing the same tags again.
+ *
+ * <p>The pool is split into segments with their own lock, each of which evicts its least recently
+ * used version when full.
+ */
+final class VersionPool {
+
+  /** shared by all calculators, the capacity can be set with a system property */
+  static final VersionPool SHARED =
+      new VersionPool(Integer.getInteger(VersionPool.class.getName() + ".capacity", 16384));
+
+  private static final int SEGMENTS = 16;
+
+  private final Segment[] segments = new Segment[SEGMENTS];
+
+  VersionPool(int capacity) {
+    if (capacity < SEGMENTS) {
+      throw new IllegalArgumentException("capacity must be at least " + SEGMENTS + ": " + capacity);
+    }
+    for (int i = 0; i < SEGMENTS; i++) {
+      segments[i] = new Segment(capacity / SEGMENTS);
+    }
+  }
+
+  /** the pooled version with the text, parsed and added if there is none */
+  Version get(String text) {
+    Segment segment = segment(text);
+    Version version;
+    synchronized (segment) {
+      version = segment.get(text);
+    }
+    if (version == null) {
+      // parse outside of the lock, a concurrent duplicate is harmless
+      version = intern(new Version(text));
+    }
+    return version;
+  }
+
+  /** the pooled version equal to {@code version}, which is added if there is none */
+  Version intern(Version version) {
+    String text = version.toString();
+    Segment segment = segment(text);
+    synchronized (segment) {
+      Version pooled = segment.putIfAbsent(text, version);
+      return pooled != null ? pooled : version;
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+  private Segment segment(String text) {
+    int hash = text.hashCode();
+    return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+  }
+
+  private static final class Segment extends LinkedHashMap<String, Version> {
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+
+    Segment(int capacity) {
+      super(16, 0.75f, true);
+      this.capacity = capacity;
+    }
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Version> eldest) {
+      return size() > capacity;
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package de.fruiture.cor.jenkins;
+
+import com.github.zafarkhaja.semver.expr.Expression;
+import com.github.zafarkhaja.semver.expr.ExpressionParser;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A compiled semver expression together with the range of normal versions ({@code
+ * major.minor.patch} without pre-release) that can possibly satisfy it.
+ *
+ * <p>The range is derived from conjunctions of comparisons, wildcards, tilde and caret ranges and
+ * always includes every satisfying version, so the expression itself has the final say. Anything
+ * else, like {@code |} or {@code !}, is not bounded.
+ */
+final class VersionQuery {
+
+  private static final int CAPACITY = 256;
+
+  private static final Map<String, VersionQuery> COMPILED =
+      new LinkedHashMap<String, VersionQuery>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, VersionQuery> eldest) {
+          return size() > CAPACITY;
+        }
+      };
+
+  private static final Pattern TERM =
+      Pattern.compile(
+          "(>=|<=|>|<|=|~|\\^)?\\s*(\\d+)(?:\\.(\\d+|[*xX]))?(?:\\.(\\d+|[*xX]))?(?:[-+]\\S*)?");
+
+  final Expression expression;
+
+  /** lowest and highest normal version as {@code {major, minor, patch}}, null if unbounded */
+  final int[] lower;
+
+  final int[] upper;
+
+  private VersionQuery(Expression expression, int[] lower, int[] upper) {
+    this.expression = expression;
+    this.lower = lower;
+    this.upper = upper;
+  }
+
+  /** the compiled expression, shared within the JVM */
+  static VersionQuery of(String expression) {
+    synchronized (COMPILED) {
+      VersionQuery query = COMPILED.get(expression);
+      if (query != null) {
+        return query;
+      }
+    }
+    VersionQuery query = compile(expression);
+    synchronized (COMPILED) {
+      COMPILED.put(expression, query);
+    }
+    return query;
+  }
+
+  private static VersionQuery compile(String expression) {
+    Expression compiled = ExpressionParser.newInstance().parse(expression);
+    int[] lower = null;
+    int[] upper = null;
+    if (!expression.matches(".*[|!()].*")) {
+      for (String term : expression.split("&")) {
+        Matcher matcher = TERM.matcher(term.trim());
+        if (!matcher.matches()) {
+          continue;
+        }
+        String op = matcher.group(1) != null ? matcher.group(1) : "=";
+        int major = Integer.parseInt(matcher.group(2));
+        int minor = number(matcher.group(3));
+        int patch = minor < 0 ? -1 : number(matcher.group(4));
+
+        int[] from;
+        int[] to;
+        if (minor < 0) {
+          from = new int[] {major, 0, 0};
+          to = new int[] {major + 1, 0, 0};
+        } else if (patch < 0) {
+          from = new int[] {major, minor, 0};
+          to = new int[] {major, minor + 1, 0};
+        } else {
+          from = new int[] {major, minor, patch};
+          to = from;
+        }
+
+        switch (op) {
+          case ">":
+          case ">=":
+            lower = max(lower, from);
+            break;
+          case "<":
+          case "<=":
+            upper = min(upper, to);
+            break;
+          case "~":
+            lower = max(lower, from);
+            upper = min(upper, patch < 0 ? to : new int[] {major, minor + 1, 0});
+            break;
+          case "^":
+            lower = max(lower, from);
+            upper = min(upper, new int[] {major + 1, 0, 0});
+            break;
+          default:
+            lower = max(lower, from);
+            upper = min(upper, to);
+        }
+      }
+    }
+    return new VersionQuery(compiled, lower, upper);
+  }
+
+  /** the number or -1 for a wildcard or missing part */
+  private static int number(String part) {
+    return part == null || !Character.isDigit(part.charAt(0)) ? -1 : Integer.parseInt(part);
+  }
+
+  private static int[] max(int[] a, int[] b) {
+    return a == null || compare(a, b) < 0 ? b : a;
+  }
+
+  private static int[] min(int[] a, int[] b) {
+    return a == null || compare(a, b) > 0 ? b : a;
+  }
+
+  static int compare(int[] a, int[] b) {
+    for (int i = 0; i < 3; i++) {
+      int result = Integer.compare(a[i], b[i]);
+      if (result != 0) {
+        return result;
+      }
+    }
+    return 0;
+  }
+
+  boolean satisfiedBy(Version version) {
+    return version.satisfies(expression);
+  }
+}
@@ -0,0 +1,22 @@
+package de.fruiture.cor.jenkins;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * Hands out distinct versions to builds that run at the same time, so that they do not try to push
+ * the same tag.
+ *
+ * <p>Reservations are kept after a successful build, the tag being pushed soon after. Builds that
+ * fail should {@link #release} theirs, so the version can be used by the next build.
+ */
+public interface VersionReservations {
+
+  /**
+   * Reserves {@code candidate}, or the first of its successors that is not reserved in {@code
+   * scope}, and returns it.
+   */
+  Version reserve(String scope, Version candidate, UnaryOperator<Version> successor);
+
+  /** Makes the version available again, does nothing if it is not reserved. */
+  void release(String scope, Version version);
+}
@@ -0,0 +1,510 @@
+package de.fruiture.cor.jenkins;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Sorted set of versions packed into primitive arrays.
+ *
+ * <p>Every entry is a {@code long} holding major and minor version, an {@code int} patch version
+ * and an {@code int} describing the pre-release: {@link #RELEASE}, the counter {@code N} of a
+ * {@code SNAPSHOT.N} pre-release, or a reference into a side table of {@link Version} objects for
+ * everything else (other pre-releases and build metadata). Versions are only created for the
+ * entries that are actually returned.
+ *
+ * <p>Like a {@link java.util.TreeSet}, the store keeps the first of several versions that are equal
+ * according to {@link Version#compareTo}. Added versions are collected unsorted and merged on the
+ * next query. A few of them are inserted in place, which only moves the greater entries, many are
+ * merged into new arrays. Removed versions are marked and dropped by the next such merge.
+ */
+final class VersionStore implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  static final int RELEASE = -1;
+  private static final int UNUSUAL = -2;
+  private static final String SNAPSHOT = "SNAPSHOT.";
+
+  // serialized by writeObject()
+  private transient long[] majorMinor = new long[16];
+  private transient int[] patch = new int[16];
+  private transient int[] preRelease = new int[16];
+  private transient boolean[] removed = new boolean[16];
+  private transient int removedCount;
+
+  private transient Version[] unusual = new Version[0];
+  private transient int unusualCount;
+
+  /** entries {@code [0, sorted)} are sorted and distinct, {@code [sorted, size)} are pending */
+  private transient int sorted;
+
+  private transient int size;
+
+  boolean isEmpty() {
+    return size == removedCount;
+  }
+
+  int size() {
+    merge();
+    return sorted - removedCount;
+  }
+
+  void add(Version version) {
+    String text = version.toString();
+    int pre = snapshotCounter(text, version.getPreReleaseVersion(), version.getBuildMetadata());
+    append(
+        version.getMajorVersion(),
+        version.getMinorVersion(),
+        version.getPatchVersion(),
+        pre != UNUSUAL ? pre : unusual(version));
+  }
+
+  /** Adds a version reported by {@link TagParser.Sink}. */
+  void add(
+      CharSequence text,
+      int start,
+      int end,
+      int major,
+      int minor,
+      int patch,
+      int preRelease,
+      int build) {
+    int pre;
+    if (build >= 0) {
+      pre = UNUSUAL;
+    } else if (preRelease < 0) {
+      pre = RELEASE;
+    } else {
+      pre = snapshotCounter(text, preRelease, end);
+    }
+
+    if (pre == UNUSUAL) {
+      pre =
+          unusual(
+              VersionPool.SHARED.intern(
+                  new Version(
+                      text.subSequence(start, end).toString(),
+                      major,
+                      minor,
+                      patch,
+                      preRelease < 0 ? -1 : preRelease - start,
+                      build < 0 ? -1 : build - start)));
+    }
+    append(major, minor, patch, pre);
+  }
+
+  /**
+   * Removes the version equal to {@code version} according to {@link Version#compareTo}, returns
+   * false if there is none.
+   */
+  boolean remove(Version version) {
+    merge();
+    int[] normal = {
+      version.getMajorVersion(), version.getMinorVersion(), version.getPatchVersion()
+    };
+    for (int i = search(normal, false), to = search(normal, true); i < to; i++) {
+      if (!removed[i] && version(i).compareTo(version) == 0) {
+        removed[i] = true;
+        removedCount++;
+        if (removedCount > sorted / 2) {
+          rebuild();
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** The greatest version or null. */
+  Version last() {
+    merge();
+    int last = below(sorted);
+    return last < 0 ? null : VersionPool.SHARED.intern(version(last));
+  }
+
+  /** the index of the greatest entry before {@code index} that is not removed, or -1 */
+  private int below(int index) {
+    int i = index - 1;
+    while (i >= 0 && removed[i]) {
+      i--;
+    }
+    return i;
+  }
+
+  /**
+   * The greatest version with the major and, unless it is -1, the minor version, or null. The
+   * entries are sorted by major, minor and patch version, so the line is found by binary search.
+   */
+  Version lastInLine(int major, int minor) {
+    merge();
+    // inclusive, the line may end at Integer.MAX_VALUE
+    int to =
+        search(new int[] {major, minor < 0 ? Integer.MAX_VALUE : minor, Integer.MAX_VALUE}, true);
+    int index = below(to);
+    if (index < 0) {
+      return null;
+    }
+    Version last = version(index);
+    return last.getMajorVersion() == major && (minor < 0 || last.getMinorVersion() == minor)
+        ? VersionPool.SHARED.intern(last)
+        : null;
+  }
+
+  /**
+   * The greatest version that satisfies the query or null. Only the entries within the query's
+   * range are tested, they are found by binary search.
+   */
+  Version lastMatching(VersionQuery query) {
+    merge();
+    int from = query.lower == null ? 0 : search(query.lower, false);
+    int to = query.upper == null ? sorted : search(query.upper, true);
+    for (int i = to - 1; i >= from; i--) {
+      if (removed[i]) {
+        continue;
+      }
+      Version version = version(i);
+      if (query.satisfiedBy(version)) {
+        return VersionPool.SHARED.intern(version);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * The index of the first sorted entry whose normal version is greater than or, unless {@code
+   * after}, equal to {@code normal}.
+   */
+  private int search(int[] normal, boolean after) {
+    long majorMinor = (long) normal[0] << 31 | normal[1];
+    int low = 0;
+    int high = sorted;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      int result = Long.compare(this.majorMinor[middle], majorMinor);
+      if (result == 0) {
+        result = Integer.compare(patch[middle], normal[2]);
+      }
+      if (result < 0 || (after && result == 0)) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private static int snapshotCounter(String text, String preRelease, String build) {
+    if (!build.isEmpty()) {
+      return UNUSUAL;
+    } else if (preRelease.isEmpty()) {
+      return RELEASE;
+    } else {
+      return snapshotCounter(text, text.length() - preRelease.length(), text.length());
+    }
+  }
+
+  /** the counter of {@code SNAPSHOT.N} at {@code text[start, end)} or {@link #UNUSUAL} */
+  private static int snapshotCounter(CharSequence text, int start, int end) {
+    int digits = start + SNAPSHOT.length();
+    if (digits >= end || end - digits > 10) {
+      return UNUSUAL;
+    }
+    for (int i = 0; i < SNAPSHOT.length(); i++) {
+      if (text.charAt(start + i) != SNAPSHOT.charAt(i)) {
+        return UNUSUAL;
+      }
+    }
+
+    long counter = 0;
+    for (int i = digits; i < end; i++) {
+      char c = text.charAt(i);
+      if (c < '0' || c > '9') {
+        return UNUSUAL;
+      }
+      counter = counter * 10 + (c - '0');
+    }
+    return counter <= Integer.MAX_VALUE ? (int) counter : UNUSUAL;
+  }
+
+  private int unusual(Version version) {
+    if (unusualCount == unusual.length) {
+      unusual = Arrays.copyOf(unusual, Math.max(4, unusualCount * 2));
+    }
+    unusual[unusualCount] = version;
+    return UNUSUAL - unusualCount++;
+  }
+
+  private void append(int major, int minor, int patch, int pre) {
+    if (size == majorMinor.length) {
+      int capacity = size * 2;
+      this.majorMinor = Arrays.copyOf(this.majorMinor, capacity);
+      this.patch = Arrays.copyOf(this.patch, capacity);
+      this.preRelease = Arrays.copyOf(this.preRelease, capacity);
+      this.removed = Arrays.copyOf(this.removed, capacity);
+    }
+    majorMinor[size] = (long) major << 31 | minor;
+    this.patch[size] = patch;
+    preRelease[size] = pre;
+    removed[size] = false;
+    size++;
+  }
+
+  Version version(int index) {
+    return version(majorMinor[index], patch[index], preRelease[index]);
+  }
+
+  private Version version(long majorMinor, int patch, int pre) {
+    if (pre <= UNUSUAL) {
+      return unusual[UNUSUAL - pre];
+    }
+
+    int major = (int) (majorMinor >>> 31);
+    int minor = (int) (majorMinor & Integer.MAX_VALUE);
+    StringBuilder text = new StringBuilder(24);
+    text.append(major).append('.').append(minor).append('.').append(patch);
+    if (pre == RELEASE) {
+      return new Version(text.toString(), major, minor, patch, -1, -1);
+    }
+    int offset = text.length() + 1;
+    text.append('-').append(SNAPSHOT).append(pre);
+    return new Version(text.toString(), major, minor, patch, offset, -1);
+  }
+
+  private int compare(int a, int b) {
+    return compare(majorMinor[a], patch[a], preRelease[a], majorMinor[b], patch[b], preRelease[b]);
+  }
+
+  private int compare(
+      long majorMinorA, int patchA, int preA, long majorMinorB, int patchB, int preB) {
+    int result = Long.compare(majorMinorA, majorMinorB);
+    if (result == 0) {
+      result = Integer.compare(patchA, patchB);
+    }
+    if (result == 0) {
+      if (preA <= UNUSUAL || preB <= UNUSUAL) {
+        result = version(majorMinorA, patchA, preA).compareTo(version(majorMinorB, patchB, preB));
+      } else if (preA == RELEASE || preB == RELEASE) {
+        result = Boolean.compare(preA == RELEASE, preB == RELEASE);
+      } else {
+        result = Integer.compare(preA, preB);
+      }
+    }
+    return result;
+  }
+
+  private void merge() {
+    if (sorted == size) {
+      return;
+    } else if (size - sorted > sorted / 4) {
+      rebuild();
+    } else {
+      insert();
+    }
+  }
+
+  /**
+   * Inserts the pending entries into the sorted ones from the back, so only the entries greater
+   * than the least pending one are moved. Pending entries equal to a removed one take its place.
+   */
+  private void insert() {
+    int pending = size - sorted;
+    int[] order = new int[pending];
+    for (int i = 0; i < pending; i++) {
+      order[i] = sorted + i;
+    }
+    mergeSort(order, 0, pending, new int[pending]);
+
+    long[] newMajorMinor = new long[pending];
+    int[] newPatch = new int[pending];
+    int[] newPreRelease = new int[pending];
+    int count = 0;
+    int last = -1;
+    for (int next : order) {
+      if (last >= 0 && compare(last, next) == 0) {
+        continue;
+      }
+      last = next;
+      int equal = find(next);
+      if (equal >= 0) {
+        if (removed[equal]) {
+          preRelease[equal] = preRelease[next];
+          removed[equal] = false;
+          removedCount--;
+        }
+        continue;
+      }
+      newMajorMinor[count] = majorMinor[next];
+      newPatch[count] = patch[next];
+      newPreRelease[count] = preRelease[next];
+      count++;
+    }
+
+    int i = sorted - 1;
+    int j = count - 1;
+    for (int to = sorted + count - 1; j >= 0; to--) {
+      if (i >= 0
+          && compare(
+                  majorMinor[i],
+                  patch[i],
+                  preRelease[i],
+                  newMajorMinor[j],
+                  newPatch[j],
+                  newPreRelease[j])
+              > 0) {
+        majorMinor[to] = majorMinor[i];
+        patch[to] = patch[i];
+        preRelease[to] = preRelease[i];
+        removed[to] = removed[i];
+        i--;
+      } else {
+        majorMinor[to] = newMajorMinor[j];
+        patch[to] = newPatch[j];
+        preRelease[to] = newPreRelease[j];
+        removed[to] = false;
+        j--;
+      }
+    }
+    sorted = size = sorted + count;
+  }
+
+  /** the index of the sorted entry equal to the one at {@code index}, or -1 */
+  private int find(int index) {
+    int low = 0;
+    int high = sorted - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int result = compare(middle, index);
+      if (result < 0) {
+        low = middle + 1;
+      } else if (result > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Sorts the pending entries and merges them with the sorted ones into new arrays, dropping
+   * duplicates and removed entries.
+   */
+  private void rebuild() {
+    int[] order = new int[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    // stable, so the first of several equal versions comes first
+    mergeSort(order, sorted, size, new int[size]);
+
+    long[] mergedMajorMinor = new long[Math.max(16, size)];
+    int[] mergedPatch = new int[mergedMajorMinor.length];
+    int[] mergedPreRelease = new int[mergedMajorMinor.length];
+    Version[] mergedUnusual = new Version[unusualCount];
+    int mergedUnusualCount = 0;
+
+    int count = 0;
+    int last = -1;
+    int i = 0;
+    int j = sorted;
+    while (i < sorted || j < size) {
+      int next;
+      if (j == size || (i < sorted && compare(order[i], order[j]) <= 0)) {
+        next = order[i++];
+      } else {
+        next = order[j++];
+      }
+      if (next < sorted && removed[next]) {
+        continue;
+      }
+      if (last >= 0 && compare(last, next) == 0) {
+        continue;
+      }
+      last = next;
+
+      mergedMajorMinor[count] = majorMinor[next];
+      mergedPatch[count] = patch[next];
+      int pre = preRelease[next];
+      if (pre <= UNUSUAL) {
+        mergedUnusual[mergedUnusualCount] = unusual[UNUSUAL - pre];
+        pre = UNUSUAL - mergedUnusualCount++;
+      }
+      mergedPreRelease[count] = pre;
+      count++;
+    }
+
+    majorMinor = mergedMajorMinor;
+    patch = mergedPatch;
+    preRelease = mergedPreRelease;
+    removed = new boolean[mergedMajorMinor.length];
+    removedCount = 0;
+    unusual = mergedUnusual;
+    unusualCount = mergedUnusualCount;
+    sorted = size = count;
+  }
+
+  private void mergeSort(int[] order, int from, int to, int[] buffer) {
+    if (to - from < 2) {
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    mergeSort(order, from, middle, buffer);
+    mergeSort(order, middle, to, buffer);
+    if (compare(order[middle - 1], order[middle]) <= 0) {
+      return;
+    }
+
+    System.arraycopy(order, from, buffer, from, to - from);
+    int i = from;
+    int j = middle;
+    for (int k = from; k < to; k++) {
+      if (j == to || (i < middle && compare(buffer[i], buffer[j]) <= 0)) {
+        order[k] = buffer[i++];
+      } else {
+        order[k] = buffer[j++];
+      }
+    }
+  }
+
+  /**
+   * Writes the merged entries as packed primitives, followed by the text of the unusual versions.
+   */
+  private void writeObject(ObjectOutputStream out) throws IOException {
+    merge();
+    if (removedCount > 0) {
+      rebuild();
+    }
+    out.defaultWriteObject();
+    out.writeInt(sorted);
+    for (int i = 0; i < sorted; i++) {
+      out.writeLong(majorMinor[i]);
+      out.writeInt(patch[i]);
+      out.writeInt(preRelease[i]);
+    }
+    out.writeInt(unusualCount);
+    for (int i = 0; i < unusualCount; i++) {
+      out.writeUTF(unusual[i].toString());
+    }
+  }
+
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    sorted = size = in.readInt();
+    majorMinor = new long[Math.max(16, size)];
+    patch = new int[majorMinor.length];
+    preRelease = new int[majorMinor.length];
+    removed = new boolean[majorMinor.length];
+    for (int i = 0; i < size; i++) {
+      majorMinor[i] = in.readLong();
+      patch[i] = in.readInt();
+      preRelease[i] = in.readInt();
+    }
+    unusualCount = in.readInt();
+    unusual = new Version[unusualCount];
+    for (int i = 0; i < unusualCount; i++) {
+      unusual[i] = Version.valueOf(in.readUTF());
+    }
+  }
+}
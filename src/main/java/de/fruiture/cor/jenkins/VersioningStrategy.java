@@ -3,6 +3,8 @@ package de.fruiture.cor.jenkins;
 import java.io.Serializable;
 
 public abstract class VersioningStrategy implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   enum Change {
     PATCH,
     MINOR,
@@ -11,8 +13,57 @@ public abstract class VersioningStrategy implements Serializable {
 
   protected Change change = Change.PATCH;
 
+  /** the maintenance line, like {@code "1"} or {@code "1.4"}, or null */
+  private String line;
+
   abstract Version getNextVersion(Version lastRelease, Version lastSnapshot);
 
+  /** Like {@link #getNextVersion}, but refuses to leave the maintenance line. */
+  Version next(Version lastRelease, Version lastSnapshot) {
+    Version next = getNextVersion(lastRelease, lastSnapshot);
+    if (!inLine(next)) {
+      throw new IllegalStateException(
+          "next version " + next + " is beyond the maintenance line " + line);
+    }
+    return next;
+  }
+
+  /** the version to try when {@code version} is already taken by another build */
+  Version successor(Version version) {
+    return version.incrementPatchVersion();
+  }
+
+  String getLine() {
+    return line;
+  }
+
+  void setLine(String line) {
+    if (line != null && !line.matches("\\d+(\\.\\d+)?")) {
+      throw new IllegalArgumentException("not a major or major.minor version: " + line);
+    }
+    this.line = line;
+  }
+
+  /** the major and minor version (or -1) of the maintenance line, or null */
+  int[] lineVersion() {
+    if (line == null) {
+      return null;
+    }
+    int dot = line.indexOf('.');
+    return dot < 0
+        ? new int[] {Integer.parseInt(line), -1}
+        : new int[] {
+          Integer.parseInt(line.substring(0, dot)), Integer.parseInt(line.substring(dot + 1))
+        };
+  }
+
+  boolean inLine(Version version) {
+    int[] line = lineVersion();
+    return line == null
+        || (version.getMajorVersion() == line[0]
+            && (line[1] < 0 || version.getMinorVersion() == line[1]));
+  }
+
   void patchChange() {
     if (change.ordinal() < Change.PATCH.ordinal()) change = Change.PATCH;
   }
@@ -26,6 +77,8 @@ public abstract class VersioningStrategy implements Serializable {
   }
 
   static class Release extends VersioningStrategy {
+    private static final long serialVersionUID = 1L;
+
     @Override
     Version getNextVersion(Version lastRelease, Version lastSnapshot) {
       Version relMin;
@@ -57,9 +110,15 @@ public abstract class VersioningStrategy implements Serializable {
   }
 
   static class Snapshot extends VersioningStrategy {
+    private static final long serialVersionUID = 1L;
 
     private static final String SNAPSHOT_START = "SNAPSHOT.0";
 
+    @Override
+    Version successor(Version version) {
+      return version.incrementPreReleaseVersion();
+    }
+
     @Override
     Version getNextVersion(Version lastRelease, Version lastSnapshot) {
       Version snapshotMin;
@@ -0,0 +1,110 @@
+package de.fruiture.cor.jenkins;
+
+import static de.fruiture.cor.jenkins.MultiVersionCalculatorTest.git;
+import static de.fruiture.cor.jenkins.MultiVersionCalculatorTest.gitAvailable;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AgentCalculationTest {
+
+  private Path repository;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    repository = Files.createTempDirectory("agent-calculation");
+    assumeTrue(gitAvailable(), "git is not installed");
+    git(repository, "init", "-q");
+    String tree = git(repository, "mktree");
+    String first = git(repository, "commit-tree", tree, "-m", "first");
+    String second = git(repository, "commit-tree", tree, "-p", first, "-m", "fix");
+    String third = git(repository, "commit-tree", tree, "-p", second, "-m", "CHANGE:MINOR");
+    git(repository, "update-ref", "--no-deref", "HEAD", third);
+    git(repository, "tag", "v1.0.0", first);
+    git(repository, "tag", "-a", "-m", "snapshot", "v1.0.1-SNAPSHOT.0", second);
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(repository)) {
+      for (Path f : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(f);
+      }
+    }
+  }
+
+  @Test
+  void calculatesInProcess() throws IOException {
+    AgentCalculation.Result result =
+        new AgentCalculation(VersionCalculator.snapshot("v"), repository.toString()).call();
+
+    assertThat(result.getReferenceTag().get(), is("v1.0.1-SNAPSHOT.0"));
+    assertThat(result.getNextVersion(), is("1.1.0-SNAPSHOT.0"));
+    assertThat(result.getNextVersionTag(), is("v1.1.0-SNAPSHOT.0"));
+    assertThat(
+        result.getGitNextTagCommand(), is("tag -am 'Release 1.1.0-SNAPSHOT.0' v1.1.0-SNAPSHOT.0"));
+    assertThat(result.getGitPushTagCommand(), is("push origin v1.1.0-SNAPSHOT.0"));
+  }
+
+  @Test
+  void travelsAsCallableAndResult() throws Exception {
+    VersionCalculator vc = VersionCalculator.release("v");
+    vc.setConventionalCommits(true);
+    AgentCalculation callable =
+        (AgentCalculation) roundTrip(new AgentCalculation(vc, repository.toString()));
+
+    AgentCalculation.Result result = (AgentCalculation.Result) roundTrip(callable.call());
+    assertThat(result.getReferenceTag().get(), is("v1.0.1-SNAPSHOT.0"));
+    // the keywords still apply to conventional commits
+    assertThat(result.getNextVersion(), is("1.1.0"));
+  }
+
+  @Test
+  void refusesReservations() {
+    MemoryReservations reservations = new MemoryReservations();
+    VersionCalculator vc = VersionCalculator.snapshot("v");
+    vc.useReservations(reservations, "repo");
+
+    assertThrows(
+        IllegalArgumentException.class, () -> new AgentCalculation(vc, repository.toString()));
+
+    // reserved and released on the controller instead
+    vc.tags("");
+    assertThat(vc.getNextVersion(), is("0.0.1-SNAPSHOT.0"));
+    VersionCalculator concurrent = VersionCalculator.snapshot("v");
+    concurrent.useReservations(reservations, "repo");
+    concurrent.tags("");
+    assertThat(concurrent.getNextVersion(), is("0.0.1-SNAPSHOT.1"));
+    vc.releaseReservation();
+    VersionCalculator next = VersionCalculator.snapshot("v");
+    next.useReservations(reservations, "repo");
+    next.tags("");
+    assertThat(next.getNextVersion(), is("0.0.1-SNAPSHOT.0"));
+  }
+
+  private static Object roundTrip(Object o) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(o);
+    }
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      return in.readObject();
+    }
+  }
+}
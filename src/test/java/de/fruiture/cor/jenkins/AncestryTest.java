@@ -0,0 +1,264 @@
+package de.fruiture.cor.jenkins;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AncestryTest {
+
+  private Path repository;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    assumeTrue(gitAvailable(), "git is not installed");
+    repository = Files.createTempDirectory("ancestry");
+    git("init", "-q");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    if (repository == null) {
+      return;
+    }
+    try (Stream<Path> files = Files.walk(repository)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  private static boolean gitAvailable() {
+    try {
+      return new ProcessBuilder("git", "--version").start().waitFor() == 0;
+    } catch (IOException | InterruptedException e) {
+      return false;
+    }
+  }
+
+  private String git(String... args) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add("git");
+    command.addAll(Arrays.asList(args));
+    ProcessBuilder builder = new ProcessBuilder(command).directory(repository.toFile());
+    builder.redirectErrorStream(true);
+    Map<String, String> environment = builder.environment();
+    environment.put("GIT_AUTHOR_NAME", "Test");
+    environment.put("GIT_AUTHOR_EMAIL", "test@example.com");
+    environment.put("GIT_COMMITTER_NAME", "Test");
+    environment.put("GIT_COMMITTER_EMAIL", "test@example.com");
+    environment.put("GIT_CONFIG_NOSYSTEM", "1");
+    environment.put("HOME", repository.toString());
+
+    Process process = builder.start();
+    process.getOutputStream().close();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (InputStream in = process.getInputStream()) {
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) >= 0) {
+        output.write(buffer, 0, n);
+      }
+      assertEquals(0, process.waitFor(), () -> command + ": " + output);
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+    return new String(output.toByteArray(), StandardCharsets.UTF_8).trim();
+  }
+
+  private String commit(String message, String... parents) throws IOException {
+    List<String> args = new ArrayList<>(Arrays.asList("commit-tree", emptyTree(), "-m", message));
+    for (String parent : parents) {
+      args.add("-p");
+      args.add(parent);
+    }
+    return git(args.toArray(new String[0]));
+  }
+
+  private String emptyTree() throws IOException {
+    return git("mktree");
+  }
+
+  private TreeSet<String> merged() throws IOException {
+    TreeSet<String> tags = new TreeSet<>();
+    GitRefs refs = new GitRefs(repository);
+    try (Ancestry ancestry = Ancestry.open(refs)) {
+      refs.tags(
+          null,
+          (name, objectId) -> {
+            if (ancestry.reaches(objectId)) {
+              tags.add(name.toString());
+            }
+          });
+    }
+    return tags;
+  }
+
+  private TreeSet<String> expected() throws IOException {
+    String output = git("tag", "-l", "--merged", "HEAD");
+    return output.isEmpty() ? new TreeSet<>() : new TreeSet<>(Arrays.asList(output.split("\n")));
+  }
+
+  @Test
+  void followsHistoryInEveryStorage() throws IOException {
+    String c1 = commit("one");
+    git("tag", "v1.0.0", c1);
+    String c2 = commit("two", c1);
+    git("tag", "-a", "-m", "annotated", "v1.1.0", c2);
+    String c3 = commit("side", c1);
+    git("tag", "v2.0.0", c3);
+    String c4 = commit("four", c2);
+    git("tag", "v1.2.0-SNAPSHOT.1", c4);
+    String c5 = commit("fix", c2);
+    git("tag", "v1.1.1", c5);
+    String c6 = commit("merge", c4, c5);
+    git("update-ref", "refs/heads/master", c6);
+    git("symbolic-ref", "HEAD", "refs/heads/master");
+
+    TreeSet<String> expected = expected();
+    assertThat(expected.contains("v2.0.0"), is(false));
+    assertThat(merged(), is(expected));
+
+    git("gc", "-q");
+    assertThat(merged(), is(expected));
+
+    git("commit-graph", "write", "--reachable");
+    assertThat(merged(), is(expected));
+
+    String c7 = commit("after graph", c6, c3);
+    git("update-ref", "refs/heads/master", c7);
+    assertThat(merged(), is(expected()));
+    assertThat(merged().contains("v2.0.0"), is(true));
+  }
+
+  @Test
+  void agreesWithGitOnRandomHistories() throws IOException {
+    Random random = new Random(3);
+    List<String> commits = new ArrayList<>();
+    for (int i = 0; i < 60; i++) {
+      List<String> parents = new ArrayList<>();
+      if (!commits.isEmpty() && random.nextInt(10) > 0) {
+        parents.add(commits.get(commits.size() - 1 - random.nextInt(Math.min(5, commits.size()))));
+        String other = commits.get(random.nextInt(commits.size()));
+        if (random.nextInt(4) == 0 && !parents.contains(other)) {
+          parents.add(other);
+        }
+      }
+      String commit = commit("commit " + i, parents.toArray(new String[0]));
+      commits.add(commit);
+      if (random.nextInt(3) == 0) {
+        git("tag", "t" + i, commit);
+      }
+      if (i == 20) {
+        git("commit-graph", "write", "--reachable", "--split");
+      }
+    }
+    git("commit-graph", "write", "--reachable", "--split=no-merge");
+
+    for (int head = 0; head < commits.size(); head += 7) {
+      git("update-ref", "--no-deref", "HEAD", commits.get(head));
+      assertThat("HEAD at " + head, merged(), is(expected()));
+    }
+    Files.delete(repository.resolve(".git/objects/info/commit-graphs/commit-graph-chain"));
+    assertThat(merged(), is(expected()));
+  }
+
+  @Test
+  void readsDeltifiedObjects() throws IOException {
+    Path file = repository.resolve("file.txt");
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      content.append("line ").append(i).append('\n');
+    }
+    for (int i = 0; i < 5; i++) {
+      content.append("change ").append(i).append('\n');
+      Files.write(file, content.toString().getBytes(StandardCharsets.UTF_8));
+      git("add", "file.txt");
+      git("commit", "-q", "-m", "change " + i);
+    }
+    git("gc", "-q", "--aggressive");
+
+    String[] objects = git("cat-file", "--batch-all-objects", "--batch-check").split("\n");
+    try (GitObjects database = new GitObjects(repository.resolve(".git/objects"), 20)) {
+      for (String object : objects) {
+        String[] fields = object.split(" ");
+        GitObjects.RawObject raw = database.read(GitObjects.id(fields[0]));
+        assertThat(object, raw.data.length, is(Integer.parseInt(fields[2])));
+        assertThat(
+            object,
+            raw.type,
+            is(Arrays.asList("", "commit", "tree", "blob", "tag").indexOf(fields[1])));
+      }
+    }
+  }
+
+  @Test
+  void calculatorReadsMergedTags() throws IOException {
+    String c1 = commit("one");
+    git("tag", "v1.0.0", c1);
+    String c2 = commit("two", c1);
+    git("tag", "v1.1.0-SNAPSHOT.2", c2);
+    String side = commit("side", c1);
+    git("tag", "v2.0.0", side);
+    git("update-ref", "refs/heads/master", c2);
+    git("symbolic-ref", "HEAD", "refs/heads/master");
+
+    VersionCalculator vc = VersionCalculator.snapshot("v");
+    vc.tags(repository);
+    assertThat(vc.getReferenceTag().get(), is("v1.1.0-SNAPSHOT.2"));
+    assertThat(vc.getNextVersion(), is("1.1.0-SNAPSHOT.3"));
+  }
+
+  @Test
+  void failsOnMissingObjects() throws IOException {
+    String c1 = commit("one");
+    git("tag", "v1.0.0", c1);
+    String c2 = commit("two", c1);
+    git("update-ref", "refs/heads/master", c2);
+    git("symbolic-ref", "HEAD", "refs/heads/master");
+    // like a partial clone without the first commit
+    Files.delete(repository.resolve(".git/objects/" + c1.substring(0, 2) + "/" + c1.substring(2)));
+
+    IOException missing =
+        assertThrows(IOException.class, () -> VersionCalculator.release("v").tags(repository));
+    assertThat(missing.getMessage(), containsString("missing object " + c1));
+  }
+
+  @Test
+  void batchReadsClone() throws IOException {
+    String c1 = commit("one");
+    git("tag", "v1.0.0", c1);
+    String c2 = commit("CHANGE:MINOR", c1);
+    git("update-ref", "refs/heads/master", c2);
+    git("symbolic-ref", "HEAD", "refs/heads/master");
+
+    VersionBatch.Result result =
+        new VersionBatch(1)
+            .calculate(
+                VersionBatch.Source.clone(
+                    "repository", () -> VersionCalculator.release("v"), repository))
+            .join();
+    assertThat(result.toString(), result.getNextVersion(), is("1.1.0"));
+  }
+}
@@ -0,0 +1,72 @@
+package de.fruiture.cor.jenkins;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.is;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.jupiter.api.Test;
+
+class CalculatorMetricsTest {
+
+  @Test
+  void countsTagsAndMessages() {
+    CalculatorMetrics metrics = new CalculatorMetrics();
+    VersionCalculator vc = VersionCalculator.snapshot("v");
+    vc.useMetrics(metrics);
+    vc.setTriggerMinorChange(Arrays.asList("feat", "fe+at", "^minor\\b", "(a)\\1"));
+
+    vc.tags("v1.0.0\nv1.1.0-SNAPSHOT.1\nv01.2.0\nv2.0\nv1.1.0-SNAPSHOT.2");
+    vc.messages("abc fix\ndef more ä😀");
+    assertThat(vc.getNextVersion(), is("1.1.0-SNAPSHOT.3"));
+
+    CalculatorMetrics.Snapshot snapshot = metrics.snapshot();
+    assertThat(snapshot.getTagsSeen(), is(4L));
+    assertThat(snapshot.getTagsAccepted(), is(3L));
+    assertThat(snapshot.getTagsRejected(), is(1L));
+    assertThat(snapshot.getMessageBytesScanned(), is(23L));
+    assertThat(snapshot.getTriggerNanos(), hasKey(CalculatorMetrics.LITERAL_TRIGGERS));
+    assertThat(snapshot.getTriggerNanos(), hasKey(CalculatorMetrics.AUTOMATON_TRIGGERS));
+    assertThat(snapshot.getTriggerNanos(), hasKey(CalculatorMetrics.COMBINED_TRIGGERS));
+    assertThat(snapshot.getTriggerNanos(), hasKey("(a)\\1"));
+    assertThat(snapshot.toString(), containsString("tags seen=4 accepted=3 rejected=1"));
+
+    metrics.reset();
+    assertThat(metrics.snapshot().getTagsSeen(), is(0L));
+    assertThat(metrics.snapshot().getTriggerNanos().isEmpty(), is(true));
+  }
+
+  @Test
+  void disabledByDefault() {
+    VersionCalculator vc = VersionCalculator.release();
+    vc.tags("1.0.0");
+    vc.messages("fix");
+    assertThat(vc.getMetrics() == null, is(true));
+    assertThat(vc.getNextVersion(), is("1.0.1"));
+  }
+
+  @Test
+  void readableThroughJmx() throws JMException {
+    CalculatorMetrics metrics = new CalculatorMetrics();
+    VersionCalculator vc = VersionCalculator.release();
+    vc.useMetrics(metrics);
+    vc.tags("1.0.0\n2.0.0");
+
+    ObjectName name = metrics.register("test");
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      assertThat(server.getAttribute(name, "TagsAccepted"), is(2L));
+      server.invoke(name, "reset", new Object[0], new String[0]);
+      assertThat(server.getAttribute(name, "TagsSeen"), is(0L));
+      assertThat(metrics.getTriggerNanos(), is(Collections.emptyMap()));
+    } finally {
+      server.unregisterMBean(name);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package de.fruiture.cor.jenkins;
+
+import static de.fruiture.cor.jenkins.ConventionalCommits.classify;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import de.fruiture.cor.jenkins.VersioningStrategy.Change;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class ConventionalCommitsTest {
+
+  @Test
+  void classifiesHeadersAndFooters() {
+    assertThat(classify("fix: typo"), is(Change.PATCH));
+    assertThat(classify("feat: search"), is(Change.MINOR));
+    assertThat(classify("Feat(api): search"), is(Change.MINOR));
+    assertThat(classify("feat!: drop java 7"), is(Change.MAJOR));
+    assertThat(classify("refactor(core)!: new model"), is(Change.MAJOR));
+    assertThat(classify("chore: deps\n\nBREAKING CHANGE: needs java 11\n"), is(Change.MAJOR));
+    assertThat(classify("fix: x\n\nRefs: #12\nBREAKING-CHANGE: gone"), is(Change.MAJOR));
+    assertThat(classify("feature: not a feat"), is(Change.PATCH));
+    assertThat(classify("feat(api: unclosed"), is(Change.PATCH));
+    assertThat(classify("fix: mentions BREAKING CHANGE: in the header"), is(Change.PATCH));
+    assertThat(classify("fix: x\n\nbreaking change: lower case"), is(Change.PATCH));
+    assertThat(classify("just some words"), is(Change.PATCH));
+    assertThat(classify(" \n"), nullValue());
+  }
+
+  @Test
+  void reportsTheCommitOfTheChange() {
+    String log =
+        "\u001eccc\nfix: three\n\n"
+            + "\u001ebbb\nfeat: two\n\nmore text\n"
+            + "\u001eaaa\nfeat: one\n";
+
+    ConventionalCommits commits = new ConventionalCommits(null);
+    commits.scan(log);
+    assertThat(commits.getChange(), is(Change.MINOR));
+    assertThat(commits.getCommit(), is("bbb"));
+
+    commits.scan("\u001eddd\nfix(x)!: four\n\u001eeee\nfeat!: five");
+    assertThat(commits.getChange(), is(Change.MAJOR));
+    assertThat(commits.getCommit(), is("ddd"));
+  }
+
+  @Test
+  void readsInChunks() throws Exception {
+    StringBuilder log = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      log.append('\u001e').append("c").append(i).append("\nfix: number ").append(i).append("\n\n");
+    }
+    log.append("\u001efeature\nfeat: the end\n\nBREAKING CHANGE: really");
+
+    for (int size : new int[] {1, 7, 64, 8192}) {
+      ConventionalCommits commits = new ConventionalCommits(null);
+      commits.scan(new StringReader(log.toString()), size);
+      assertThat(commits.getChange(), is(Change.MAJOR));
+      assertThat(commits.getCommit(), is("feature"));
+    }
+  }
+
+  @Test
+  void appliesTriggers() {
+    ConventionalCommits commits =
+        new ConventionalCommits(
+            new TriggerScanner(
+                Collections.singletonList(Pattern.compile("CHANGE:MINOR")),
+                Collections.singletonList(Pattern.compile("CHANGE:MAJOR"))));
+    commits.scan("\u001eb\nfix: b\n\u001ea\nfix: a CHANGE:MINOR\n");
+    assertThat(commits.getChange(), is(Change.MINOR));
+    assertThat(commits.getCommit(), is("a"));
+  }
+}
@@ -0,0 +1,189 @@
+package de.fruiture.cor.jenkins;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GitRefsTest {
+
+  private static final String ID = "0123456789012345678901234567890123456789";
+  private static final String SORTED = "# pack-refs with: peeled fully-peeled sorted \n";
+
+  private Path repository;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    repository = Files.createTempDirectory("git-refs");
+    write(".git/HEAD", "ref: refs/heads/master\n");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(repository)) {
+      for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(file);
+      }
+    }
+  }
+
+  private void write(String file, String content) throws IOException {
+    Path path = repository.resolve(file);
+    Files.createDirectories(path.getParent());
+    Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /** packed-refs records for the names, {@code ^} stands for a peeled line */
+  private static String refs(String... names) {
+    StringBuilder refs = new StringBuilder();
+    for (String name : names) {
+      refs.append(name.equals("^") ? "^" + ID : ID + " " + name).append('\n');
+    }
+    return refs.toString();
+  }
+
+  private List<String> tags(String prefix) throws IOException {
+    List<String> tags = new ArrayList<>();
+    new GitRefs(repository).tags(prefix, name -> tags.add(name.toString()));
+    return tags;
+  }
+
+  @Test
+  void noRefs() throws IOException {
+    assertThat(tags(null), empty());
+  }
+
+  @Test
+  void notARepository() throws IOException {
+    Files.delete(repository.resolve(".git/HEAD"));
+    Files.delete(repository.resolve(".git"));
+    assertThrows(IOException.class, () -> new GitRefs(repository));
+  }
+
+  @Test
+  void sortedPackedRefs() throws IOException {
+    write(
+        ".git/packed-refs",
+        SORTED
+            + refs(
+                "refs/heads/master",
+                "refs/tags/1.0.0",
+                "refs/tags/v1.0.0",
+                "^",
+                "refs/tags/v1.1.0",
+                "refs/tags/w1.0.0"));
+
+    assertThat(tags("v"), contains("v1.0.0", "v1.1.0"));
+    assertThat(tags("w"), contains("w1.0.0"));
+    assertThat(tags("x"), empty());
+    assertThat(tags(null), contains("1.0.0", "v1.0.0", "v1.1.0", "w1.0.0"));
+  }
+
+  @Test
+  void unsortedPackedRefs() throws IOException {
+    write(".git/packed-refs", refs("refs/tags/v2.0.0", "refs/heads/v1", "refs/tags/v1.0.0"));
+
+    assertThat(tags("v"), contains("v2.0.0", "v1.0.0"));
+  }
+
+  @Test
+  void looseRefs() throws IOException {
+    write(".git/refs/tags/v1.0.0", ID + "\n");
+    write(".git/refs/tags/v1.1.0.lock", ID + "\n");
+    write(".git/refs/tags/v/2.0.0", ID + "\n");
+    write(".git/refs/tags/w1.0.0", ID + "\n");
+
+    assertThat(tags("v"), containsInAnyOrder("v1.0.0", "v/2.0.0"));
+  }
+
+  @Test
+  void linkedWorktree() throws IOException {
+    write("main/.git/packed-refs", ID + " refs/tags/v1.0.0\n");
+    write("main/.git/worktrees/wt/HEAD", ID + "\n");
+    write("main/.git/worktrees/wt/commondir", "../..\n");
+    write("wt/.git", "gitdir: ../main/.git/worktrees/wt\n");
+
+    GitRefs refs = new GitRefs(repository.resolve("wt"));
+    assertThat(refs.commonDir(), is(repository.resolve("main/.git")));
+
+    List<String> tags = new ArrayList<>();
+    refs.tags("v", name -> tags.add(name.toString()));
+    assertThat(tags, contains("v1.0.0"));
+  }
+
+  @Test
+  void binarySearchFindsEveryPrefix() throws IOException {
+    Random random = new Random(5);
+    TreeSet<String> names = new TreeSet<>();
+    for (int i = 0; i < 500; i++) {
+      StringBuilder name = new StringBuilder("refs/tags/");
+      int length = 1 + random.nextInt(4);
+      for (int k = 0; k < length; k++) {
+        name.append("abv1.".charAt(random.nextInt(5)));
+      }
+      names.add(name.toString());
+    }
+
+    StringBuilder packed = new StringBuilder("# pack-refs with: peeled sorted \n");
+    for (String name : names) {
+      packed.append(ID).append(' ').append(name).append('\n');
+      if (random.nextBoolean()) {
+        packed.append('^').append(ID).append('\n');
+      }
+    }
+    write(".git/packed-refs", packed.toString());
+
+    for (String prefix : new String[] {"", "a", "b", "v1", "v1.", "ab", "1", "x", "bbbb"}) {
+      List<String> expected =
+          names
+              .stream()
+              .map(name -> name.substring("refs/tags/".length()))
+              .filter(name -> name.startsWith(prefix))
+              .collect(Collectors.toList());
+      assertThat(prefix, tags(prefix), is(expected));
+    }
+  }
+
+  @Test
+  void objectIds() throws IOException {
+    String other = ID.replace('0', 'f');
+    write(".git/packed-refs", SORTED + refs("refs/tags/v1.0.0", "^", "refs/tags/v1.1.0"));
+    write(".git/refs/tags/v1.1.0", other + "\n");
+    write(".git/refs/tags/v2.0.0", "ref: refs/tags/v1.0.0\n");
+
+    List<String> tags = new ArrayList<>();
+    new GitRefs(repository).tags("v", (name, objectId) -> tags.add(name + " " + objectId));
+    assertThat(tags, containsInAnyOrder("v1.0.0 " + ID, "v1.1.0 " + other, "v2.0.0 " + ID));
+  }
+
+  @Test
+  void resolvesHead() throws IOException {
+    GitRefs refs = new GitRefs(repository);
+    assertThat(refs.resolve("HEAD"), nullValue());
+
+    write(".git/packed-refs", refs("refs/heads/master"));
+    assertThat(refs.resolve("HEAD"), is(ID));
+
+    write(".git/HEAD", "ref: refs/heads/other\n");
+    write(".git/refs/heads/other", "abc\n");
+    assertThat(refs.resolve("HEAD"), is("abc"));
+  }
+}
@@ -0,0 +1,180 @@
+package de.fruiture.cor.jenkins;
+
+import static de.fruiture.cor.jenkins.MultiVersionCalculatorTest.git;
+import static de.fruiture.cor.jenkins.MultiVersionCalculatorTest.gitAvailable;
+import static de.fruiture.cor.jenkins.MultiVersionCalculatorTest.shell;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class HistoryReplayTest {
+
+  @Test
+  void versionPerCommit() {
+    HistoryReplay replay = new HistoryReplay(VersionCalculator.release("v"));
+
+    assertThat(replay.commit("a1", "initial", Collections.emptyList()), is("0.0.1"));
+    assertThat(replay.commit("b2", "CHANGE:MINOR", Collections.emptyList()), is("0.1.0"));
+    assertThat(replay.commit("c3", "release", Arrays.asList("v1.0.0", "other")), is("1.0.1"));
+    assertThat(replay.commit("d4", "fix", Collections.emptyList()), is("1.0.1"));
+    assertThat(replay.commit("e5", "older", Collections.singletonList("v0.9.0")), is("1.0.1"));
+    assertThat(replay.commit("f6", "CHANGE:MAJOR", Collections.emptyList()), is("2.0.0"));
+  }
+
+  @Test
+  void startsWithoutTags() {
+    VersionCalculator vc = VersionCalculator.release();
+    vc.tags("1.0.0");
+    assertThrows(IllegalStateException.class, () -> new HistoryReplay(vc));
+  }
+
+  @Test
+  void seesOnlyTheFirstParentHistory() throws IOException {
+    Path repository = Files.createTempDirectory("history-replay");
+    try {
+      assumeTrue(gitAvailable(), "git is not installed");
+      git(repository, "init", "-q");
+      String tree = git(repository, "mktree");
+      String first = git(repository, "commit-tree", tree, "-m", "initial");
+      git(repository, "tag", "v1.0.0", first);
+      String side = git(repository, "commit-tree", tree, "-p", first, "-m", "feat: side");
+      git(repository, "tag", "v1.1.0-rc", side);
+      String merge =
+          git(repository, "commit-tree", tree, "-p", first, "-p", side, "-m", "Merge branch x");
+      git(repository, "update-ref", "--no-deref", "HEAD", merge);
+
+      VersionCalculator vc = VersionCalculator.release("v");
+      vc.setConventionalCommits(true);
+      HistoryReplay replay = new HistoryReplay(vc);
+      Map<String, String> versions = new LinkedHashMap<>();
+      replay.replay(new StringReader(shell(repository, replay.getGitLogCommand())), versions::put);
+      assertThat(versions.get(merge), is("1.0.1"));
+
+      VersionCalculator calculator = VersionCalculator.release("v");
+      calculator.setConventionalCommits(true);
+      calculator.tags(shell(repository, calculator.getGitFindTagsCommand()));
+      calculator.messages(shell(repository, calculator.getGitLogCommand()));
+      assertThat(calculator.getNextVersion(), is("1.1.0"));
+    } finally {
+      try (Stream<Path> files = Files.walk(repository)) {
+        for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  @Test
+  void agreesWithCalculatorAtEveryCommit() throws IOException {
+    Path repository = Files.createTempDirectory("history-replay");
+    try {
+      assumeTrue(gitAvailable(), "git is not installed");
+      git(repository, "init", "-q");
+      Random random = new Random(17);
+      String[] messages = {"fix", "feat: thing", "fix!: api", "CHANGE:MINOR", "CHANGE:MAJOR", "x"};
+      List<String> tags =
+          new ArrayList<>(
+              Arrays.asList(
+                  "v0.1.0",
+                  "v0.2.0-SNAPSHOT.0",
+                  "v0.2.0-SNAPSHOT.1",
+                  "v0.2.0",
+                  "v1.0.0",
+                  "v0.3.0",
+                  "v1.1.0-SNAPSHOT.3",
+                  "v1.1.0",
+                  "v2.0.0-SNAPSHOT.0",
+                  "v1.0.5",
+                  "other"));
+
+      String parent = null;
+      List<String> commits = new ArrayList<>();
+      for (int i = 0; i < 40; i++) {
+        List<String> args =
+            new ArrayList<>(Arrays.asList("commit-tree", git(repository, "mktree")));
+        args.addAll(Arrays.asList("-m", messages[random.nextInt(messages.length)]));
+        if (parent != null) {
+          args.addAll(Arrays.asList("-p", parent));
+        }
+        parent = git(repository, args.toArray(new String[0]));
+        if (i % 9 == 4) {
+          commits.add(parent);
+          // a branch whose commits and tags count the same either way
+          String side =
+              git(repository, "commit-tree", git(repository, "mktree"), "-p", parent, "-m", "fix");
+          side = git(repository, "commit-tree", git(repository, "mktree"), "-p", side, "-m", "x");
+          parent =
+              git(
+                  repository,
+                  "commit-tree",
+                  git(repository, "mktree"),
+                  "-p",
+                  parent,
+                  "-p",
+                  side,
+                  "-m",
+                  "Merge branch 'side'");
+        }
+        commits.add(parent);
+        while (!tags.isEmpty() && random.nextInt(4) == 0) {
+          String tag = tags.remove(0);
+          if (random.nextBoolean()) {
+            git(repository, "tag", tag, parent);
+          } else {
+            git(repository, "tag", "-a", "-m", tag, tag, parent);
+          }
+        }
+      }
+      git(repository, "update-ref", "--no-deref", "HEAD", parent);
+
+      List<Supplier<VersionCalculator>> calculators =
+          Arrays.asList(
+              () -> VersionCalculator.snapshot("v"),
+              () -> VersionCalculator.release("v"),
+              () -> {
+                VersionCalculator vc = VersionCalculator.release("v");
+                vc.setConventionalCommits(true);
+                return vc;
+              });
+      for (Supplier<VersionCalculator> calculator : calculators) {
+        HistoryReplay replay = new HistoryReplay(calculator.get());
+        Map<String, String> versions = new LinkedHashMap<>();
+        replay.replay(
+            new StringReader(shell(repository, replay.getGitLogCommand())), versions::put);
+        assertThat(new ArrayList<>(versions.keySet()), is(commits));
+
+        for (String commit : commits) {
+          VersionCalculator vc = calculator.get();
+          vc.tags(shell(repository, "tag --merged " + commit));
+          String log = vc.getGitLogCommand();
+          vc.messages(shell(repository, log.substring(0, log.length() - 4) + commit));
+          assertThat(commit, versions.get(commit), is(vc.getNextVersion()));
+        }
+      }
+    } finally {
+      try (Stream<Path> files = Files.walk(repository)) {
+        for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package de.fruiture.cor.jenkins;
+
+import static de.fruiture.cor.jenkins.MultiVersionCalculatorTest.git;
+import static de.fruiture.cor.jenkins.MultiVersionCalculatorTest.gitAvailable;
+import static de.fruiture.cor.jenkins.MultiVersionCalculatorTest.shell;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class LogFilterTest {
+
+  @Test
+  void translatesPortableKeywords() {
+    assertThat(extended("CHANGE:MINOR"), is("CHANGE:MINOR"));
+    assertThat(extended("fo[ox]"), is("fo[ox]"));
+    assertThat(extended("(?:feat|feature)!?:"), is("(feat|feature)!?:"));
+    assertThat(extended("\\d+\\.x{2,}"), is("[0-9]+\\.x{2,}"));
+    assertThat(LogFilter.extended(Pattern.compile("Feat", Pattern.CASE_INSENSITIVE)), is("Feat"));
+    assertThat(LogFilter.extended(Pattern.compile("a.b+", Pattern.LITERAL)), is("a\\.b\\+"));
+  }
+
+  @Test
+  void keepsKeywordsThatCouldMatchElsewhere() {
+    // blanks, line breaks and the hash are not part of a single subject
+    assertThat(extended("ma[jJ].r"), nullValue());
+    assertThat(extended("minor API change"), nullValue());
+    assertThat(extended("\\sfix"), nullValue());
+    assertThat(extended("[^x]fix"), nullValue());
+    assertThat(extended("cafe"), nullValue());
+    assertThat(extended("[a-z]+"), nullValue());
+    assertThat(extended("x*"), nullValue());
+    assertThat(extended("fix|"), nullValue());
+    // anchors, flags and other syntax
+    assertThat(extended("^fix"), nullValue());
+    assertThat(extended("(?i)fix"), nullValue());
+    assertThat(extended("fix+?"), nullValue());
+    assertThat(extended("(fix)\\1"), nullValue());
+    assertThat(extended("it's"), nullValue());
+    assertThat(LogFilter.extended(Pattern.compile("fix", Pattern.MULTILINE)), nullValue());
+  }
+
+  @Test
+  void commands() {
+    List<Pattern> minor = Arrays.asList(Pattern.compile("feat"), Pattern.compile("(?i)x"));
+    List<Pattern> major =
+        Collections.singletonList(Pattern.compile("BREAK", Pattern.CASE_INSENSITIVE));
+    assertThat(LogFilter.commands("HEAD", minor, major), nullValue());
+
+    assertThat(
+        LogFilter.commands("v1.0.0..HEAD", minor.subList(0, 1), major),
+        is(
+            Arrays.asList(
+                Arrays.asList("log", "--pretty=oneline", "--max-count=1", "v1.0.0..HEAD"),
+                Arrays.asList("log", "--pretty=oneline", "-E", "--grep=feat", "v1.0.0..HEAD"),
+                Arrays.asList(
+                    "log", "--pretty=oneline", "-E", "-i", "--grep=BREAK", "v1.0.0..HEAD"))));
+
+    VersionCalculator vc = VersionCalculator.release();
+    vc.tags("");
+    assertThat(
+        vc.getGitLogCommands(),
+        is(
+            Arrays.asList(
+                "log --pretty=oneline --max-count=1 HEAD",
+                "log --pretty=oneline -E --grep=CHANGE:MAJOR --grep=CHANGE:MINOR HEAD")));
+    vc.setTriggerMajorChange(Collections.singletonList("(?:BREAKING|major)!"));
+    assertThat(
+        vc.getGitLogCommands().get(1),
+        is("log --pretty=oneline -E '--grep=(BREAKING|major)!' --grep=CHANGE:MINOR HEAD"));
+    vc.setTriggerMinorChange(Collections.singletonList("minor change"));
+    assertThat(vc.getGitLogCommands(), is(Collections.singletonList("log --pretty=oneline HEAD")));
+    assertThat(
+        vc.getGitLogArgumentLists(),
+        is(Collections.singletonList(Arrays.asList("log", "--pretty=oneline", "HEAD"))));
+  }
+
+  @Test
+  void agreesWithFullLog() throws IOException {
+    Path repository = Files.createTempDirectory("log-filter");
+    try {
+      assumeTrue(gitAvailable(), "git is not installed");
+      git(repository, "init", "-q");
+      Random random = new Random(3);
+      String[] lines = {
+        "fix", "feat: thing", "Feat(ui)", "CHANGE:MINOR", "CHANGE:MAJOR", "chore", "major", "BREAK"
+      };
+      String parent = null;
+      List<String> commits = new ArrayList<>();
+      for (int i = 0; i < 30; i++) {
+        StringBuilder message = new StringBuilder(lines[random.nextInt(lines.length)]);
+        if (random.nextBoolean()) {
+          // continues the subject or starts the body
+          message.append(random.nextBoolean() ? "\n" : "\n\n");
+          message.append(lines[random.nextInt(lines.length)]);
+        }
+        List<String> args =
+            new ArrayList<>(
+                Arrays.asList("commit-tree", git(repository, "mktree"), "-m", message.toString()));
+        if (parent != null) {
+          args.add("-p");
+          args.add(parent);
+        }
+        parent = git(repository, args.toArray(new String[0]));
+        commits.add(parent);
+      }
+      git(repository, "update-ref", "--no-deref", "HEAD", parent);
+      git(repository, "tag", "1.0.0", commits.get(10));
+
+      List<List<String>> minorTriggers =
+          Arrays.asList(
+              Arrays.asList("CHANGE:MINOR"),
+              Arrays.asList("feat", "(?:Feat|feat)\\("),
+              Arrays.asList("[Ff]eat:", "hing"));
+      List<List<String>> majorTriggers =
+          Arrays.asList(
+              Arrays.asList("CHANGE:MAJOR"), Arrays.asList("BREAK|maj+or"), Arrays.asList("major"));
+      for (List<String> minor : minorTriggers) {
+        for (List<String> major : majorTriggers) {
+          for (String tags : new String[] {"", "1.0.0"}) {
+            VersionCalculator full = VersionCalculator.release();
+            VersionCalculator filtered = VersionCalculator.release();
+            for (VersionCalculator vc : Arrays.asList(full, filtered)) {
+              vc.setTriggerMinorChange(minor);
+              vc.setTriggerMajorChange(major);
+              vc.tags(tags);
+            }
+            full.messages(shell(repository, full.getGitLogCommand()));
+            List<String> outputs = new ArrayList<>();
+            for (String command : filtered.getGitLogCommands()) {
+              outputs.add(shell(repository, command));
+            }
+            assertThat(filtered.getGitLogCommands().size(), is(2));
+            filtered.messages(String.join("\n", outputs));
+            assertThat(minor + " " + major, filtered.getNextVersion(), is(full.getNextVersion()));
+          }
+        }
+      }
+    } finally {
+      try (Stream<Path> files = Files.walk(repository)) {
+        for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  private static String extended(String regex) {
+    return LogFilter.extended(Pattern.compile(regex));
+  }
+}
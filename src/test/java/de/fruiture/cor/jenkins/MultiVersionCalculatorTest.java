@@ -0,0 +1,253 @@
+package de.fruiture.cor.jenkins;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class MultiVersionCalculatorTest {
+
+  private static final String RS = "\u001e";
+  private static final String US = "\u001f";
+
+  @Test
+  void routesTagsByPrefix() {
+    MultiVersionCalculator mvc = MultiVersionCalculator.snapshot("api-", "api-v2-", "web-");
+    assertThat(
+        mvc.getGitFindTagsCommand(), is("tag -l --merged HEAD 'api-*' 'api-v2-*' 'web-*'"));
+
+    mvc.tags("api-1.0.0\napi-v2-3.0.0\nweb-0.1.0\nweb-0.2.0-SNAPSHOT.4\nother-9.0.0");
+    assertThat(mvc.getReferenceTags().get("api-"), is(Optional.of("api-1.0.0")));
+    assertThat(mvc.getReferenceTags().get("api-v2-"), is(Optional.of("api-v2-3.0.0")));
+    assertThat(mvc.getReferenceTags().get("web-"), is(Optional.of("web-0.2.0-SNAPSHOT.4")));
+    assertThat(mvc.get("web-").getNextVersion(), is("0.2.0-SNAPSHOT.5"));
+  }
+
+  @Test
+  void rejectsDuplicatePrefixes() {
+    assertThrows(
+        IllegalArgumentException.class, () -> MultiVersionCalculator.release("api-", "api-"));
+  }
+
+  @Test
+  void boundsLogByCommonAncestors() {
+    MultiVersionCalculator mvc = MultiVersionCalculator.release("api-", "web-");
+    mvc.tags("web-1.0.0");
+    assertThat(mvc.getGitMergeBaseCommand(), nullValue());
+    assertThat(
+        mvc.getGitLogCommand(),
+        is("log --topo-order --decorate-refs=refs/tags/ '--format=%x1e%H %P%x1f%D%n%H %s' HEAD"));
+
+    mvc.tags("api-2.0.0");
+    assertThat(
+        mvc.getGitMergeBaseCommand(), is("merge-base --all --octopus 'api-2.0.0' 'web-1.0.0'"));
+    mvc.mergeBases("abc\ndef\n");
+    assertThat(
+        mvc.getGitLogCommand(),
+        is(
+            "log --topo-order --decorate-refs=refs/tags/ '--format=%x1e%H %P%x1f%D%n%H %s' HEAD"
+                + " --not abc def"));
+    assertThat(
+        mvc.getGitLogArguments(),
+        is(
+            Arrays.asList(
+                "log",
+                "--topo-order",
+                "--decorate-refs=refs/tags/",
+                "--format=%x1e%H %P%x1f%D%n%H %s",
+                "HEAD",
+                "--not",
+                "abc",
+                "def")));
+    assertThat(mvc.getGitPushTagCommand(), is("push origin api-2.0.1 web-1.0.1"));
+  }
+
+  @Test
+  void countsCommitsSinceEachReference() {
+    MultiVersionCalculator mvc = MultiVersionCalculator.release("api-", "web-");
+    mvc.setTriggerMinorChange(Collections.singletonList("feat"));
+    mvc.tags("api-1.0.0\nweb-2.0.0");
+    mvc.messages(
+        RS
+            + "d c"
+            + US
+            + "\nfix something\n"
+            + RS
+            + "c b"
+            + US
+            + "tag: web-2.0.0\nfeat: web\n"
+            + RS
+            + "b a"
+            + US
+            + "\nfeat: api\n"
+            + RS
+            + "a"
+            + US
+            + "tag: api-1.0.0\nCHANGE:MAJOR\n");
+
+    assertThat(mvc.getNextVersions().get("api-"), is("1.1.0"));
+    assertThat(mvc.getNextVersions().get("web-"), is("2.0.1"));
+  }
+
+  @Test
+  void classifiesConventionalCommitsOfSomeModules() {
+    MultiVersionCalculator mvc = MultiVersionCalculator.release("api-", "web-");
+    mvc.get("web-").setConventionalCommits(true);
+    assertThat(
+        mvc.getGitLogCommand(),
+        is("log --topo-order --decorate-refs=refs/tags/ '--format=%x1e%H %P%x1f%D%n%H %s%n%B' HEAD"));
+    mvc.tags("api-1.0.0\nweb-2.0.0");
+    mvc.messages(
+        RS
+            + "d c"
+            + US
+            + "\nd fix: something\nfix: something\n\nBREAKING CHANGE: for web\n"
+            + RS
+            + "c b"
+            + US
+            + "\nc feat: both\nfeat: both\n"
+            + RS
+            + "b a"
+            + US
+            + "tag: web-2.0.0\nb chore\nchore\n"
+            + RS
+            + "a"
+            + US
+            + "tag: api-1.0.0\na CHANGE:MAJOR\nCHANGE:MAJOR\n");
+
+    assertThat(mvc.getNextVersions().get("api-"), is("1.0.1"));
+    assertThat(mvc.getNextVersions().get("web-"), is("3.0.0"));
+    assertThat(mvc.get("api-").getChangeCommit(), is(Optional.empty()));
+    assertThat(mvc.get("web-").getChangeCommit(), is(Optional.of("d")));
+  }
+
+  @Test
+  void agreesWithSeparateCalculators() throws IOException {
+    Path repository = Files.createTempDirectory("multi-version");
+    try {
+      assumeTrue(gitAvailable(), "git is not installed");
+      git(repository, "init", "-q");
+      Random random = new Random(11);
+      String[] subjects = {
+        "fix", "feat: thing", "CHANGE:MAJOR", "chore", "fix!: drop", "fix: x\n\nBREAKING CHANGE: y"
+      };
+      List<String> commits = new ArrayList<>();
+      for (int i = 0; i < 40; i++) {
+        List<String> args =
+            new ArrayList<>(
+                Arrays.asList(
+                    "commit-tree", git(repository, "mktree"), "-m", subjects[random.nextInt(6)]));
+        if (!commits.isEmpty()) {
+          args.add("-p");
+          args.add(commits.get(commits.size() - 1 - random.nextInt(Math.min(3, commits.size()))));
+          String other = commits.get(random.nextInt(commits.size()));
+          if (random.nextInt(4) == 0 && !args.contains(other)) {
+            args.add("-p");
+            args.add(other);
+          }
+        }
+        String commit = git(repository, args.toArray(new String[0]));
+        commits.add(commit);
+        if (i % 7 == 3) {
+          git(repository, "tag", "api-1." + i + ".0", commit);
+        }
+        if (i % 11 == 5) {
+          git(repository, "tag", "web-2." + i + ".0", commit);
+        }
+      }
+
+      for (int head = 20; head < commits.size(); head += 6) {
+        git(repository, "update-ref", "--no-deref", "HEAD", commits.get(head));
+        MultiVersionCalculator mvc = MultiVersionCalculator.release("api-", "web-");
+        mvc.setTriggerMinorChange(Collections.singletonList("feat"));
+        mvc.get("web-").setConventionalCommits(true);
+        mvc.tags(shell(repository, mvc.getGitFindTagsCommand()));
+        if (mvc.getGitMergeBaseCommand() != null) {
+          mvc.mergeBases(shell(repository, mvc.getGitMergeBaseCommand()));
+        }
+        mvc.messages(shell(repository, mvc.getGitLogCommand()));
+
+        for (String prefix : mvc.getPrefixes()) {
+          VersionCalculator vc = VersionCalculator.release(prefix);
+          vc.setTriggerMinorChange(Collections.singletonList("feat"));
+          vc.setConventionalCommits(prefix.equals("web-"));
+          vc.tags(shell(repository, vc.getGitFindTagsCommand()));
+          vc.messages(shell(repository, vc.getGitLogCommand()));
+          assertThat(prefix + " at " + head, mvc.getNextVersions().get(prefix), is(vc.getNextVersion()));
+        }
+      }
+    } finally {
+      try (Stream<Path> files = Files.walk(repository)) {
+        for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  static boolean gitAvailable() {
+    try {
+      return new ProcessBuilder("git", "--version").start().waitFor() == 0;
+    } catch (IOException | InterruptedException e) {
+      return false;
+    }
+  }
+
+  static String shell(Path repository, String gitArguments) throws IOException {
+    return run(repository, Arrays.asList("sh", "-c", "git " + gitArguments));
+  }
+
+  static String git(Path repository, String... args) throws IOException {
+    List<String> command = new ArrayList<>();
+    command.add("git");
+    command.addAll(Arrays.asList(args));
+    return run(repository, command).trim();
+  }
+
+  private static String run(Path repository, List<String> command) throws IOException {
+    ProcessBuilder builder = new ProcessBuilder(command).directory(repository.toFile());
+    builder.redirectErrorStream(true);
+    Map<String, String> environment = builder.environment();
+    environment.put("GIT_AUTHOR_NAME", "Test");
+    environment.put("GIT_AUTHOR_EMAIL", "test@example.com");
+    environment.put("GIT_COMMITTER_NAME", "Test");
+    environment.put("GIT_COMMITTER_EMAIL", "test@example.com");
+    environment.put("GIT_CONFIG_NOSYSTEM", "1");
+    environment.put("HOME", repository.toString());
+
+    Process process = builder.start();
+    process.getOutputStream().close();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    try (InputStream in = process.getInputStream()) {
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) >= 0) {
+        output.write(buffer, 0, n);
+      }
+      assertEquals(0, process.waitFor(), () -> command + ": " + output);
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+    return new String(output.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,113 @@
+package de.fruiture.cor.jenkins;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class TagParserTest {
+
+  @Test
+  void findsPrefixedTags() {
+    String tags = "rel-1.2.3\nrel-foo xrel-1.2.4-SNAPSHOT.1 rel-01.2.3 rel-1.2.3.4\nrel-2.0.0+b.7";
+    List<String> found = new ArrayList<>();
+    new TagParser("rel-").scan(tags, 0, tags.length(), v -> found.add(v.toString()));
+
+    assertThat(found, contains("1.2.3", "1.2.4-SNAPSHOT.1", "2.0.0+b.7"));
+  }
+
+  @Test
+  void parsesVersions() {
+    Version v = TagParser.parse("1.2.3-SNAPSHOT.4+build.5", 0, 24);
+    assertThat(v.getMajorVersion(), is(1));
+    assertThat(v.getMinorVersion(), is(2));
+    assertThat(v.getPatchVersion(), is(3));
+    assertThat(v.getPreReleaseVersion(), is("SNAPSHOT.4"));
+    assertThat(v.getBuildMetadata(), is("build.5"));
+    assertThat(v.toString(), is("1.2.3-SNAPSHOT.4+build.5"));
+
+    assertThat(TagParser.parse("x1.2.3", 1, 6), is(new Version("1.2.3")));
+    assertThat(TagParser.parse("1.2", 0, 3), nullValue());
+    assertThat(TagParser.parse("1.2.3-", 0, 6), nullValue());
+    assertThat(TagParser.parse("1.2.3-01", 0, 8), nullValue());
+    assertThat(TagParser.parse("1.2.3+01", 0, 8), is(new Version("1.2.3+01")));
+    assertThat(TagParser.parse("1.2.3-a..b", 0, 10), nullValue());
+    assertThat(TagParser.parse("2147483648.0.0", 0, 14), nullValue());
+  }
+
+  @Test
+  void agreesWithRegexAndLibrary() {
+    Random random = new Random(4711);
+    String alphabet = "0123456789012345678901234567890.....--++abSNAPSHOT \n\r\t_x";
+
+    for (String prefix : new String[] {null, "v", "rel-", "1."}) {
+      Pattern pattern =
+          prefix != null
+              ? Pattern.compile(Pattern.quote(prefix) + "(\\d+.\\d+\\.\\d+\\S*)")
+              : Pattern.compile("(\\d+.\\d+\\.\\d+\\S*)");
+      TagParser parser = new TagParser(prefix);
+
+      for (int n = 0; n < 20000; n++) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(40);
+        for (int i = 0; i < length; i++) {
+          text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+
+        List<String> expected = new ArrayList<>();
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+          try {
+            com.github.zafarkhaja.semver.Version.valueOf(matcher.group(1));
+            expected.add(matcher.group(1));
+          } catch (Exception ignored) {
+            // not a version
+          }
+        }
+
+        List<String> actual = new ArrayList<>();
+        parser.scan(text, 0, text.length(), v -> actual.add(v.toString()));
+
+        assertThat(text.toString(), actual, is(expected));
+      }
+    }
+  }
+
+  @Test
+  void ordersLikeLibrary() {
+    String[] versions = {
+      "1.2.3",
+      "1.2.3-SNAPSHOT.9",
+      "1.2.3-SNAPSHOT.10",
+      "1.2.3-SNAPSHOT",
+      "1.2.3-SNAPSHOT.1.1",
+      "1.2.3-alpha",
+      "1.2.3-RC.1",
+      "1.2.3--5",
+      "1.2.3-0",
+      "1.2.3-99999999999",
+      "1.2.4",
+      "1.10.0",
+      "1.2.3+build",
+      "0.0.1-a-b"
+    };
+
+    for (String a : versions) {
+      for (String b : versions) {
+        int expected =
+            Integer.signum(
+                com.github.zafarkhaja.semver.Version.valueOf(a)
+                    .compareTo(com.github.zafarkhaja.semver.Version.valueOf(b)));
+        assertThat(
+            a + " <> " + b, Integer.signum(new Version(a).compareTo(new Version(b))), is(expected));
+      }
+    }
+  }
+}
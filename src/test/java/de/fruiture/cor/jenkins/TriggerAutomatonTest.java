@@ -0,0 +1,138 @@
+package de.fruiture.cor.jenkins;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import de.fruiture.cor.jenkins.VersioningStrategy.Change;
+import java.util.Random;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.Test;
+
+class TriggerAutomatonTest {
+
+  @Test
+  void supportsRegularSubset() {
+    for (String regex :
+        new String[] {
+          "a+b", "(?i)fe[a-f]t", "(?:x|y){2,3}?", "[^\\s]\\w*", "(?s).", "[]a-]", "a\\.b\\(", ""
+        }) {
+      assertThat(regex, automaton(Pattern.compile(regex)), notNullValue());
+    }
+    assertThat(automaton(Pattern.compile("ab", Pattern.DOTALL)), notNullValue());
+  }
+
+  @Test
+  void rejectsTheRest() {
+    for (String regex :
+        new String[] {
+          "^a", "a$", "a\\b", "(a)\\1", "(?=a)", "(?<x>a)", "a*+", "\\D", "\\x41", "[a&&b]", "(?m)a"
+        }) {
+      assertThat(regex, automaton(Pattern.compile(regex)), nullValue());
+    }
+    assertThat(automaton(Pattern.compile("a", Pattern.MULTILINE)), nullValue());
+    assertThat(automaton(Pattern.compile("(a{100}){100}")), nullValue());
+  }
+
+  @Test
+  void levels() {
+    TriggerAutomaton.Builder builder = new TriggerAutomaton.Builder();
+    builder.add(Pattern.compile("fe+at"), Change.MINOR);
+    builder.add(Pattern.compile("break(ing)?!"), Change.MAJOR);
+    TriggerAutomaton automaton = builder.build();
+
+    assertThat(find(automaton, "fix"), nullValue());
+    assertThat(find(automaton, "feeat"), is(Change.MINOR));
+    assertThat(find(automaton, "feat breaking!"), is(Change.MAJOR));
+  }
+
+  @Test
+  void agreesWithPattern() {
+    Random random = new Random(5);
+    String text = "ab A\n😀\uDE00 ";
+    for (int n = 0; n < 3000; n++) {
+      String regex = regex(random, 2);
+      Pattern pattern;
+      try {
+        pattern = Pattern.compile(regex, random.nextInt(3) == 0 ? Pattern.CASE_INSENSITIVE : 0);
+      } catch (RuntimeException e) {
+        continue;
+      }
+      TriggerAutomaton automaton = automaton(pattern);
+      if (automaton == null) {
+        continue;
+      }
+
+      for (int t = 0; t < 10; t++) {
+        StringBuilder s = new StringBuilder();
+        int length = random.nextInt(10);
+        for (int i = 0; i < length; i++) {
+          s.append(text.charAt(random.nextInt(text.length())));
+        }
+        Change expected = pattern.matcher(s).find() ? Change.MINOR : null;
+        assertThat(pattern + " '" + s + "'", find(automaton, s), is(expected));
+
+        // in parts, which may split surrogate pairs
+        TriggerAutomaton.Run run = new TriggerAutomaton.Run();
+        Change found = null;
+        int from = 0;
+        while (from < s.length() && found == null) {
+          int to = Math.min(s.length(), from + 1 + random.nextInt(3));
+          found = automaton.find(run, s, from, to, false);
+          from = to;
+        }
+        if (found == null) {
+          found = automaton.find(run, s, s.length(), s.length(), true);
+        }
+        assertThat(pattern + " '" + s + "' in parts", found, is(expected));
+      }
+    }
+  }
+
+  @Test
+  void linearTime() {
+    TriggerAutomaton automaton = automaton(Pattern.compile("(a|aa)*b"));
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 1_000_000; i++) {
+      text.append('a');
+    }
+    assertThat(find(automaton, text), nullValue());
+    assertThat(find(automaton, text.append('b')), is(Change.MINOR));
+  }
+
+  private static String regex(Random random, int depth) {
+    StringBuilder regex = new StringBuilder();
+    int atoms = 1 + random.nextInt(3);
+    for (int i = 0; i < atoms; i++) {
+      int kind = random.nextInt(depth > 0 ? 8 : 6);
+      if (kind == 0) {
+        regex.append(".");
+      } else if (kind == 1) {
+        regex.append(new String[] {"[ab]", "[^a]", "[a-c]", "[\\s]", "[^\\w]"}[random.nextInt(5)]);
+      } else if (kind == 2) {
+        regex.append(new String[] {"\\s", "\\w", "\\d", "(?s).", "\\n"}[random.nextInt(5)]);
+      } else if (kind == 6) {
+        regex.append("(").append(regex(random, depth - 1)).append(")");
+      } else if (kind == 7) {
+        regex.append("(?:").append(regex(random, depth - 1));
+        regex.append("|").append(regex(random, depth - 1)).append(")");
+      } else {
+        regex.append("abA ".charAt(random.nextInt(4)));
+      }
+      if (random.nextInt(3) == 0) {
+        regex.append(new String[] {"*", "+", "?", "{2}", "{1,2}", "*?", "{0,}"}[random.nextInt(7)]);
+      }
+    }
+    return regex.toString();
+  }
+
+  private static TriggerAutomaton automaton(Pattern pattern) {
+    TriggerAutomaton.Builder builder = new TriggerAutomaton.Builder();
+    return builder.add(pattern, Change.MINOR) ? builder.build() : null;
+  }
+
+  private static Change find(TriggerAutomaton automaton, CharSequence text) {
+    return automaton.find(new TriggerAutomaton.Run(), text, 0, text.length(), true);
+  }
+}
@@ -0,0 +1,201 @@
+package de.fruiture.cor.jenkins;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import de.fruiture.cor.jenkins.VersioningStrategy.Change;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class TriggerScannerTest {
+
+  private static List<Pattern> patterns(String... patterns) {
+    return Arrays.stream(patterns).map(Pattern::compile).collect(Collectors.toList());
+  }
+
+  @Test
+  void defaults() {
+    TriggerScanner scanner = new TriggerScanner(patterns("CHANGE:MINOR"), patterns("CHANGE:MAJOR"));
+
+    assertThat(scanner.scan(" \n\t"), nullValue());
+    assertThat(scanner.scan("fix"), is(Change.PATCH));
+    assertThat(scanner.scan("a CHANGE:MINOR b"), is(Change.MINOR));
+    assertThat(scanner.scan("CHANGE:MINOR CHANGE:MAJOR"), is(Change.MAJOR));
+  }
+
+  @Test
+  void overlappingTriggers() {
+    TriggerScanner scanner = new TriggerScanner(patterns("ab[c]"), patterns("b[c]d"));
+    assertThat(scanner.scan("abcd"), is(Change.MAJOR));
+
+    scanner = new TriggerScanner(patterns("abc"), patterns("bcd"));
+    assertThat(scanner.scan("abcd"), is(Change.MAJOR));
+
+    scanner = new TriggerScanner(patterns("(a)\\1"), Collections.emptyList());
+    assertThat(scanner.scan("xaax"), is(Change.MINOR));
+  }
+
+  @Test
+  void agreesWithSeparateSearches() {
+    Random random = new Random(7);
+    String[] candidates = {
+      "ab", "ba", "abc", "b[ac]", "a+b", "(?i)AB", "c\\b", "^a", "b$", "(a)\\1", "a|cc", "", "bca"
+    };
+
+    for (int n = 0; n < 3000; n++) {
+      List<Pattern> minor = pick(random, candidates);
+      List<Pattern> major = pick(random, candidates);
+      TriggerScanner scanner = new TriggerScanner(minor, major);
+
+      for (int t = 0; t < 10; t++) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(12);
+        for (int i = 0; i < length; i++) {
+          text.append("abc \n".charAt(random.nextInt(5)));
+        }
+
+        Change expected = null;
+        if (!text.toString().trim().isEmpty()) {
+          expected = Change.PATCH;
+        }
+        if (minor.stream().anyMatch(p -> p.matcher(text).find())) {
+          expected = Change.MINOR;
+        }
+        if (major.stream().anyMatch(p -> p.matcher(text).find())) {
+          expected = Change.MAJOR;
+        }
+
+        assertThat(minor + " " + major + " '" + text + "'", scanner.scan(text), is(expected));
+      }
+    }
+  }
+
+  @Test
+  void streamsAcrossChunkBoundaries() throws IOException {
+    TriggerScanner scanner =
+        new TriggerScanner(
+            patterns("CHANGE:MINOR", "minor\\s+api"), patterns("CHANGE:MAJOR", "^x$"));
+
+    assertThat(scanner.scan(new StringReader("abc CHANGE:MINOR def"), 5), is(Change.MINOR));
+    assertThat(scanner.scan(new StringReader("abc minor   api def"), 10), is(Change.MINOR));
+    assertThat(scanner.scan(new StringReader("abc minor   apx def"), 10), is(Change.PATCH));
+    assertThat(scanner.scan(new StringReader("x"), 4), is(Change.MAJOR));
+    assertThat(scanner.scan(new StringReader("xxxxx"), 1), is(Change.PATCH));
+    assertThat(scanner.scan(new StringReader("  \n "), 2), nullValue());
+
+    // decided by the next chunk
+    scanner = new TriggerScanner(patterns("foo(?!bar)"), patterns("x(?=yz)"));
+    assertThat(scanner.scan(new StringReader("foobar"), 3), is(Change.PATCH));
+    assertThat(scanner.scan(new StringReader("foobaz"), 3), is(Change.MINOR));
+    assertThat(scanner.scan(new StringReader("axyz"), 2), is(Change.MAJOR));
+  }
+
+  @Test
+  void stopsReadingAtMajorChange() throws IOException {
+    TriggerScanner scanner = new TriggerScanner(patterns("CHANGE:MINOR"), patterns("CHANGE:MAJOR"));
+    StringReader reader = new StringReader("CHANGE:MAJOR and much more");
+
+    assertThat(scanner.scan(reader, 12), is(Change.MAJOR));
+    assertThat(reader.read(), is((int) ' '));
+  }
+
+  @Test
+  void streamingAgreesWithCompleteText() throws IOException {
+    Random random = new Random(11);
+    String[] candidates = {
+      "ab", "abc", "b[ac]", "a{1,2}b", "c\\b", "^a", "b$", "(?m)^c", "a\\sb", "a(?!b)", "c(?=a b)"
+    };
+
+    for (int n = 0; n < 2000; n++) {
+      TriggerScanner scanner =
+          new TriggerScanner(pick(random, candidates), pick(random, candidates));
+      StringBuilder text = new StringBuilder();
+      int length = random.nextInt(30);
+      for (int i = 0; i < length; i++) {
+        text.append("abc \n".charAt(random.nextInt(5)));
+      }
+
+      assertThat(
+          scanner.scan(new StringReader(text.toString()), 3 + random.nextInt(4)),
+          is(scanner.scan(text)));
+    }
+  }
+
+  @Test
+  void linearTimeForRegularTriggers() throws IOException {
+    TriggerScanner scanner = new TriggerScanner(patterns("(a|aa)*c"), patterns("x(?:y|z)+!"));
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 200_000; i++) {
+      text.append('a');
+    }
+    assertThat(scanner.scan(text), is(Change.PATCH));
+    assertThat(scanner.scan(new StringReader(text + "c"), 64), is(Change.MINOR));
+    // regardless of the chunk size
+    assertThat(scanner.scan(new StringReader("xyzyzyzyzy!"), 2), is(Change.MAJOR));
+  }
+
+  @Test
+  void budgetForBacktracking() {
+    TriggerScanner scanner =
+        new TriggerScanner(
+            patterns("^(a|a)*\\1$"), Collections.emptyList(), null, 1_000_000, 60_000);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 30; i++) {
+      text.append('a');
+    }
+    assertThat(scanner.scan("aaaa"), is(Change.MINOR));
+
+    IllegalStateException exceeded =
+        assertThrows(IllegalStateException.class, () -> scanner.scan(text.append('b')));
+    assertThat(exceeded.getMessage(), containsString("^(a|a)*\\1$"));
+    assertThat(exceeded.getMessage(), containsString("1000000 steps"));
+  }
+
+  @Test
+  void budgetPerSearch() throws IOException {
+    TriggerScanner scanner =
+        new TriggerScanner(
+            patterns("(?m)^feat\\b", "(x)\\1"), patterns("(?m)^break\\b"), null, 1_000, 20);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      text.append("fix something\n");
+    }
+    text.append("feat done");
+
+    // reading takes far longer than the budget, and all searches together read far more
+    Reader slow =
+        new FilterReader(new StringReader(text.toString())) {
+          @Override
+          public int read(char[] buffer, int offset, int length) throws IOException {
+            try {
+              Thread.sleep(5);
+            } catch (InterruptedException e) {
+              throw new InterruptedIOException();
+            }
+            return super.read(buffer, offset, length);
+          }
+        };
+    assertThat(scanner.scan(slow, 64), is(Change.MINOR));
+  }
+
+  private static List<Pattern> pick(Random random, String[] candidates) {
+    String[] picked = new String[random.nextInt(4)];
+    for (int i = 0; i < picked.length; i++) {
+      picked[i] = candidates[random.nextInt(candidates.length)];
+    }
+    return patterns(picked);
+  }
+}
@@ -0,0 +1,129 @@
+package de.fruiture.cor.jenkins;
+
+import static de.fruiture.cor.jenkins.MultiVersionCalculatorTest.git;
+import static de.fruiture.cor.jenkins.MultiVersionCalculatorTest.gitAvailable;
+import static de.fruiture.cor.jenkins.MultiVersionCalculatorTest.shell;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class VersionBatchTest {
+
+  @Test
+  void calculatesEveryRepository() {
+    VersionBatch batch = new VersionBatch(2);
+    Map<String, CompletableFuture<VersionBatch.Result>> results =
+        batch.calculate(
+            Arrays.asList(
+                VersionBatch.Source.text(
+                    "one", VersionCalculator::release, "1.0.0\n1.1.0", "abc CHANGE:MINOR"),
+                VersionBatch.Source.text(
+                    "two", () -> VersionCalculator.snapshot("v"), "v2.0.0", "abc fix"),
+                VersionBatch.Source.clone(
+                    "missing", VersionCalculator::release, Paths.get("does/not/exist"))));
+
+    VersionBatch.Result one = results.get("one").join();
+    assertThat(one.getReferenceTag(), is(Optional.of("1.1.0")));
+    assertThat(one.getNextVersion(), is("1.2.0"));
+
+    assertThat(results.get("two").join().getNextVersionTag(), is("v2.0.1-SNAPSHOT.0"));
+
+    VersionBatch.Result missing = results.get("missing").join();
+    assertThat(missing.isFailed(), is(true));
+    assertThat(missing.getFailure(), instanceOf(IOException.class));
+  }
+
+  @Test
+  void limitsConcurrentReads() throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      VersionBatch batch = new VersionBatch(executor, 2);
+      AtomicInteger reading = new AtomicInteger();
+      AtomicInteger most = new AtomicInteger();
+      CountDownLatch started = new CountDownLatch(1);
+      List<VersionBatch.Source> sources = new ArrayList<>();
+      for (int i = 0; i < 16; i++) {
+        sources.add(
+            new VersionBatch.Source("repo" + i, VersionCalculator::release) {
+              @Override
+              void read(VersionCalculator vc, VersionBatch.Io io) throws IOException {
+                io.run(
+                    () -> {
+                      most.accumulateAndGet(reading.incrementAndGet(), Math::max);
+                      started.countDown();
+                      try {
+                        Thread.sleep(5);
+                      } catch (InterruptedException e) {
+                        throw new IOException(e);
+                      }
+                      reading.decrementAndGet();
+                      vc.tags("1.0.0");
+                    });
+              }
+            });
+      }
+      Map<String, CompletableFuture<VersionBatch.Result>> results = batch.calculate(sources);
+      assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+      for (CompletableFuture<VersionBatch.Result> result : results.values()) {
+        assertThat(result.join().getReferenceTag(), is(Optional.of("1.0.0")));
+      }
+      assertThat(most.get(), lessThanOrEqualTo(2));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void stopsGitAtMajorChange() throws IOException {
+    Path repository = Files.createTempDirectory("version-batch");
+    try {
+      assumeTrue(gitAvailable(), "git is not installed");
+      git(repository, "init", "-q");
+      StringBuilder commits = new StringBuilder();
+      for (int i = 0; i <= 20000; i++) {
+        String message = i < 20000 ? "fix " + i : "CHANGE:MAJOR";
+        commits.append("commit refs/heads/x\ncommitter A <a@b> ").append(i).append(" +0000\n");
+        commits.append("data ").append(message.length()).append('\n').append(message).append('\n');
+      }
+      Path stream = repository.resolve("stream");
+      Files.write(stream, commits.toString().getBytes(StandardCharsets.UTF_8));
+      shell(repository, "fast-import --quiet < stream");
+      git(repository, "symbolic-ref", "HEAD", "refs/heads/x");
+
+      VersionCalculator vc = VersionCalculator.release();
+      vc.tags("");
+      // the log is far longer than what is read, git is stopped rather than read to the end
+      VersionBatch.log(repository, vc);
+      assertThat(vc.getNextVersion(), is("1.0.0"));
+    } finally {
+      try (Stream<Path> files = Files.walk(repository)) {
+        for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+}
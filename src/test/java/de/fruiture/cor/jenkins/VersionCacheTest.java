@@ -0,0 +1,182 @@
+package de.fruiture.cor.jenkins;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import de.fruiture.cor.jenkins.VersioningStrategy.Change;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class VersionCacheTest {
+
+  private Path directory;
+  private Path file;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    directory = Files.createTempDirectory("version-cache");
+    file = directory.resolve("cache/versions");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path f : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(f);
+      }
+    }
+  }
+
+  private static VersionCache.Entry entry(String next) {
+    return new VersionCache.Entry(Optional.of("v" + next), Change.PATCH, next);
+  }
+
+  @Test
+  void evictsLeastRecentlyUsed() {
+    VersionCache cache = new VersionCache(file, 2);
+    assertThat(cache.get("a"), nullValue());
+
+    cache.put("a", entry("1.0.0"));
+    cache.put("b", entry("2.0.0"));
+    assertThat(cache.get("a").nextVersion, is("1.0.0"));
+    cache.put("c", entry("3.0.0"));
+
+    VersionCache reopened = new VersionCache(file, 2);
+    assertThat(reopened.get("b"), nullValue());
+    assertThat(reopened.get("a").referenceTag, is(Optional.of("v1.0.0")));
+    assertThat(reopened.get("c").change, is(Change.PATCH));
+  }
+
+  @Test
+  void hitsOnlyRead() throws IOException {
+    VersionCache cache = new VersionCache(file, 2);
+    cache.put("a", entry("1.0.0"));
+    cache.put("b", entry("2.0.0"));
+    byte[] written = Files.readAllBytes(file);
+
+    assertThat(cache.get("a").nextVersion, is("1.0.0"));
+    assertThat(Files.readAllBytes(file), is(written));
+
+    // the hit still counts once an entry is written
+    cache.put("c", entry("3.0.0"));
+    assertThat(cache.get("b"), nullValue());
+    assertThat(cache.get("a"), notNullValue());
+  }
+
+  @Test
+  void ignoresDamagedFile() throws IOException {
+    Files.createDirectories(file.getParent());
+    Files.write(file, "something else".getBytes());
+
+    VersionCache cache = new VersionCache(file);
+    assertThat(cache.get("a"), nullValue());
+    cache.put("a", entry("1.0.0"));
+    assertThat(cache.get("a"), notNullValue());
+  }
+
+  @Test
+  void sharedByThreads() throws InterruptedException, ExecutionException {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 40; i++) {
+        String key = "k" + i;
+        futures.add(executor.submit(() -> new VersionCache(file).put(key, entry("1.0." + key))));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    VersionCache cache = new VersionCache(file);
+    for (int i = 0; i < 40; i++) {
+      assertThat(cache.get("k" + i), notNullValue());
+    }
+  }
+
+  @Test
+  void streamedTagsShareTheKey() throws IOException {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      text.append("v1.").append(i).append(".0\n");
+    }
+    String tags = text.append("x\uD83D\uDE00y\nv1.2000.0-SNAPSHOT.1").toString();
+
+    VersionCalculator streamed = VersionCalculator.snapshot("v");
+    streamed.useCache(new VersionCache(file), "abc");
+    streamed.tags(new StringReader(tags));
+    assertThat(streamed.getReferenceTag(), is(Optional.of("v1.2000.0-SNAPSHOT.1")));
+    streamed.messages("CHANGE:MAJOR");
+    assertThat(streamed.getNextVersion(), is("2.0.0-SNAPSHOT.0"));
+
+    VersionCalculator whole = VersionCalculator.snapshot("v");
+    whole.useCache(new VersionCache(file), "abc");
+    whole.tags(tags);
+    whole.messages("fix");
+    assertThat(whole.getNextVersion(), is("2.0.0-SNAPSHOT.0"));
+
+    // reads that split lines and the surrogate pair
+    VersionCalculator trickled = VersionCalculator.snapshot("v");
+    trickled.useCache(new VersionCache(file), "abc");
+    trickled.tags(
+        new FilterReader(new StringReader(tags)) {
+          @Override
+          public int read(char[] buffer, int offset, int length) throws IOException {
+            return super.read(buffer, offset, Math.min(length, 3));
+          }
+        });
+    trickled.messages("fix");
+    assertThat(trickled.getNextVersion(), is("2.0.0-SNAPSHOT.0"));
+  }
+
+  @Test
+  void calculatorSkipsWorkOnHit() {
+    VersionCalculator first = VersionCalculator.snapshot("v");
+    first.useCache(new VersionCache(file), "abc");
+    first.tags("v1.0.0\nv1.1.0-SNAPSHOT.1");
+    assertThat(first.getGitLogCommand(), is("log --pretty=oneline v1.1.0-SNAPSHOT.1..HEAD"));
+    first.messages("CHANGE:MAJOR");
+    assertThat(first.getNextVersion(), is("2.0.0-SNAPSHOT.0"));
+
+    VersionCalculator second = VersionCalculator.snapshot("v");
+    second.useCache(new VersionCache(file), "abc");
+    second.tags("v1.0.0\nv1.1.0-SNAPSHOT.1");
+    assertThat(second.getReferenceTag(), is(Optional.of("v1.1.0-SNAPSHOT.1")));
+    second.messages("no change at all");
+    assertThat(second.getNextVersion(), is("2.0.0-SNAPSHOT.0"));
+
+    VersionCalculator otherHead = VersionCalculator.snapshot("v");
+    otherHead.useCache(new VersionCache(file), "def");
+    otherHead.tags("v1.0.0\nv1.1.0-SNAPSHOT.1");
+    otherHead.messages("no change at all");
+    assertThat(otherHead.getNextVersion(), is("1.1.0-SNAPSHOT.2"));
+
+    VersionCalculator otherTriggers = VersionCalculator.snapshot("v");
+    otherTriggers.useCache(new VersionCache(file), "abc");
+    otherTriggers.setTriggerMajorChange(Collections.singletonList("BREAKING"));
+    otherTriggers.tags("v1.0.0\nv1.1.0-SNAPSHOT.1");
+    otherTriggers.messages("CHANGE:MAJOR");
+    assertThat(otherTriggers.getNextVersion(), is("1.1.0-SNAPSHOT.2"));
+  }
+}
@@ -1,9 +1,31 @@
 package de.fruiture.cor.jenkins;
 
+import static de.fruiture.cor.jenkins.MultiVersionCalculatorTest.git;
+import static de.fruiture.cor.jenkins.MultiVersionCalculatorTest.gitAvailable;
+import static de.fruiture.cor.jenkins.MultiVersionCalculatorTest.shell;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -36,6 +58,9 @@ class VersionCalculatorTest {
     assertThat(vc.getGitFindTagsCommand(), is("tag -l --merged HEAD 'rel-*'"));
     vc.tags("rel-0.1.0-SNAPSHOT.0 rel-0.1.0-SNAPSHOT.1");
     assertThat(vc.getGitLogCommand(), is("log --pretty=oneline rel-0.1.0-SNAPSHOT.1..HEAD"));
+    assertThat(
+        vc.getGitLogArguments(),
+        is(Arrays.asList("log", "--pretty=oneline", "rel-0.1.0-SNAPSHOT.1..HEAD")));
     vc.messages("CHANGE:PATCH bla");
     assertThat(vc.getNextVersion(), is("0.1.0"));
     assertThat(vc.getGitNextTagCommand(), is("tag -am 'Release 0.1.0' rel-0.1.0"));
@@ -53,6 +78,309 @@ class VersionCalculatorTest {
     assertThat(c1.getGitNextTagCommand(), is("tag -am 'Release 0.1.0-SNAPSHOT.0' 0.1.0-SNAPSHOT.0"));
   }
 
+  @Test
+  void streamedTags() throws IOException {
+    String tags = "rel-1.2.3\nrel-1.2.4-SNAPSHOT.0\r\nrel-1.2.4-SNAPSHOT.1 rel-1.2.x\nrel-1.1.0";
+
+    VersionCalculator fromString = VersionCalculator.snapshot("rel-");
+    fromString.tags(tags);
+
+    VersionCalculator fromReader = VersionCalculator.snapshot("rel-");
+    fromReader.tags(new StringReader(tags));
+
+    VersionCalculator fromStream = VersionCalculator.snapshot("rel-");
+    fromStream.tags(
+        new ByteArrayInputStream(tags.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+
+    assertThat(fromString.getReferenceTag().get(), is("rel-1.2.4-SNAPSHOT.1"));
+    assertThat(fromReader.getReferenceTag(), is(fromString.getReferenceTag()));
+    assertThat(fromStream.getReferenceTag(), is(fromString.getReferenceTag()));
+    assertThat(fromReader.getNextVersion(), is(fromString.getNextVersion()));
+    assertThat(fromStream.getNextVersion(), is(fromString.getNextVersion()));
+  }
+
+  @Test
+  void derivedResultsFollowInput() {
+    VersionCalculator vc = VersionCalculator.snapshot();
+    vc.tags("1.2.3 1.2.4-SNAPSHOT.0 1.2.2-SNAPSHOT.7");
+    assertThat(vc.getReferenceTag().get(), is("1.2.4-SNAPSHOT.0"));
+    assertThat(vc.getNextVersion(), is("1.2.4-SNAPSHOT.1"));
+
+    vc.tags("1.2.4");
+    assertThat(vc.getReferenceTag().get(), is("1.2.4"));
+    assertThat(vc.getNextVersion(), is("1.2.5-SNAPSHOT.0"));
+
+    vc.messages("CHANGE:MINOR");
+    assertThat(vc.getNextVersion(), is("1.3.0-SNAPSHOT.0"));
+    assertThat(
+        vc.getGitNextTagCommand(), is("tag -am 'Release 1.3.0-SNAPSHOT.0' 1.3.0-SNAPSHOT.0"));
+  }
+
+  @Test
+  void survivesSerialization() throws Exception {
+    VersionCalculator vc = VersionCalculator.snapshot("v");
+    StringBuilder tags = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      tags.append("v1.").append(i / 100).append('.').append(i % 100).append('\n');
+    }
+    tags.append("v1.99.100-SNAPSHOT.3 v1.99.100-rc.1+build");
+    vc.tags(tags.toString());
+    vc.setTriggerMinorChange(Arrays.asList("(?i)feature"));
+    vc.messages("a FEATURE");
+    assertThat(vc.getNextVersion(), is("1.100.0-SNAPSHOT.0"));
+
+    byte[] serialized = serialize(vc);
+    assertThat(serialized.length, lessThan(20 * 10000));
+
+    VersionCalculator resumed = (VersionCalculator) deserialize(serialized);
+    assertThat(resumed.getReferenceTag(), is(vc.getReferenceTag()));
+    assertThat(resumed.getNextVersion(), is("1.100.0-SNAPSHOT.0"));
+
+    resumed.messages("another feature");
+    assertThat(resumed.getNextVersion(), is("1.100.0-SNAPSHOT.0"));
+    resumed.tags("v1.100.0-SNAPSHOT.0");
+    assertThat(resumed.getNextVersion(), is("1.100.0-SNAPSHOT.1"));
+  }
+
+  @Test
+  void deferredTagsSurviveSerialization() throws Exception {
+    Path directory = Files.createTempDirectory("version-calculator");
+    try {
+      VersionCalculator vc = VersionCalculator.release("v");
+      vc.useCache(new VersionCache(directory.resolve("cache")), "abc");
+      vc.tags("v1.0.0\nv1.1.0");
+      vc.applyDelta(Collections.singleton("v1.2.0"), Collections.singleton("v1.1.0"));
+      StringBuilder pattern = new StringBuilder("big|");
+      while (pattern.length() < 70_000) {
+        pattern.append('y');
+      }
+      vc.setTriggerMinorChange(Arrays.asList(pattern.toString()));
+
+      VersionCalculator resumed = (VersionCalculator) deserialize(serialize(vc));
+      resumed.messages("big");
+      assertThat(resumed.getReferenceTag().get(), is("v1.2.0"));
+      assertThat(resumed.getNextVersion(), is("1.3.0"));
+    } finally {
+      try (Stream<Path> files = Files.walk(directory)) {
+        for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  @Test
+  void versionSurvivesSerialization() throws Exception {
+    Version version = (Version) deserialize(serialize(new Version("1.2.3-SNAPSHOT.4")));
+    assertThat(version.getPatchVersion(), is(3));
+    assertThat(version.incrementPreReleaseVersion(), is(new Version("1.2.3-SNAPSHOT.5")));
+    assertThat(version.satisfies(">=1.2.0"), is(true));
+  }
+
+  @Test
+  void versionIncrementsStopAtTheIntegerLimit() {
+    Version max = new Version("2147483647.2147483647.2147483647-SNAPSHOT.2147483647");
+    assertThrows(IllegalStateException.class, max::incrementMajorVersion);
+    assertThrows(IllegalStateException.class, () -> max.incrementMinorVersion("SNAPSHOT.0"));
+    assertThrows(IllegalStateException.class, max::incrementPatchVersion);
+    assertThat(
+        new Version("1.2147483646.0").incrementMinorVersion().toString(), is("1.2147483647.0"));
+  }
+
+  @Test
+  void latestMatching() {
+    VersionCalculator vc = VersionCalculator.snapshot("v");
+    vc.tags("v1.3.9\nv1.4.0\nv1.4.2\nv1.4.3-SNAPSHOT.2\nv1.5.0-SNAPSHOT.0\nv2.0.0");
+    assertThat(vc.latestMatching(">=1.4.0 & <=1.4.9").get(), is("v1.4.3-SNAPSHOT.2"));
+    assertThat(vc.latestReleaseMatching("1.4.*").get(), is("v1.4.2"));
+    // pre-releases of 1.5.0 are less than 1.5.0
+    assertThat(vc.latestMatching("<1.5.0").get(), is("v1.5.0-SNAPSHOT.0"));
+    assertThat(vc.latestReleaseMatching("~3.1").isPresent(), is(false));
+  }
+
+  @Test
+  void maintenanceLine() {
+    VersionCalculator vc = VersionCalculator.release("v");
+    vc.setMaintenanceLine("1.4");
+    assertThat(vc.getGitFindTagsCommand(), is("tag -l --merged HEAD 'v1.4.*'"));
+    vc.tags("v1.3.9\nv1.4.0\nv1.4.2\nv1.4.3-SNAPSHOT.1\nv1.5.0\nv2.0.0");
+    assertThat(vc.getReferenceTag().get(), is("v1.4.3-SNAPSHOT.1"));
+    assertThat(vc.getNextVersion(), is("1.4.3"));
+
+    vc.messages("CHANGE:MINOR");
+    assertThrows(IllegalStateException.class, vc::getNextVersion);
+
+    vc.setMaintenanceLine("1");
+    assertThat(vc.getGitFindTagsCommand(), is("tag -l --merged HEAD 'v1.*'"));
+    assertThat(vc.getReferenceTag().get(), is("v1.5.0"));
+    assertThat(vc.getNextVersion(), is("1.6.0"));
+
+    assertThrows(IllegalArgumentException.class, () -> vc.setMaintenanceLine("1.x"));
+  }
+
+  @Test
+  void maintenanceLineWithoutTags() {
+    VersionCalculator vc = VersionCalculator.release("v");
+    vc.setMaintenanceLine("2");
+    vc.tags("v1.9.0");
+    assertThat(vc.getReferenceTag().isPresent(), is(false));
+    assertThat(vc.getNextVersion(), is("2.0.1"));
+    vc.messages("CHANGE:MINOR");
+    assertThat(vc.getNextVersion(), is("2.1.0"));
+
+    VersionCalculator snapshot = VersionCalculator.snapshot("v");
+    snapshot.setMaintenanceLine("1.4");
+    snapshot.tags("v1.3.9\nv1.5.0");
+    assertThat(snapshot.getNextVersion(), is("1.4.1-SNAPSHOT.0"));
+    snapshot.tags("v1.4.1-SNAPSHOT.0");
+    assertThat(snapshot.getNextVersion(), is("1.4.1-SNAPSHOT.1"));
+  }
+
+  @Test
+  void recentTags() {
+    VersionCalculator vc = VersionCalculator.snapshot("v");
+    assertThat(
+        vc.getGitFindRecentTagsCommand(),
+        is(
+            "for-each-ref --merged HEAD --sort=-v:refname --count=16"
+                + " --format='%(refname:strip=2)' 'refs/tags/v*'"));
+
+    StringBuilder snapshots = new StringBuilder();
+    for (int i = 20; i > 0; i--) {
+      snapshots.append("v1.3.0-SNAPSHOT.").append(i).append('\n');
+    }
+    assertThat(vc.recentTags(snapshots.substring(0, snapshots.indexOf("SNAPSHOT.4\n"))), is(false));
+    assertThat(vc.getGitFindRecentTagsCommand(), containsString("--count=32"));
+    assertThat(vc.recentTags(snapshots + "v1.2.0\nv1.1.0\n"), is(true));
+    assertThat(vc.getReferenceTag().get(), is("v1.3.0-SNAPSHOT.20"));
+
+    // a complete listing needs no release
+    VersionCalculator snapshotsOnly = VersionCalculator.snapshot();
+    assertThat(snapshotsOnly.getGitFindRecentTagsCommand(), endsWith(" refs/tags"));
+    assertThat(snapshotsOnly.recentTags("0.1.0-SNAPSHOT.1\n0.1.0-SNAPSHOT.0\n"), is(true));
+    assertThat(snapshotsOnly.getNextVersion(), is("0.1.0-SNAPSHOT.2"));
+  }
+
+  @Test
+  void recentTagsAgreeWithAllTags() throws IOException {
+    Path repository = Files.createTempDirectory("recent-tags");
+    try {
+      assumeTrue(gitAvailable(), "git is not installed");
+      git(repository, "init", "-q");
+      String commit = git(repository, "commit-tree", git(repository, "mktree"), "-m", "first");
+      git(repository, "update-ref", "--no-deref", "HEAD", commit);
+      Random random = new Random(9);
+      for (int i = 0; i < 200; i++) {
+        int minor = random.nextInt(12);
+        String tag =
+            random.nextInt(4) == 0
+                ? "v1." + minor + "." + random.nextInt(12)
+                : "v1." + minor + "." + random.nextInt(12) + "-SNAPSHOT." + random.nextInt(30);
+        git(repository, "tag", "-f", tag, commit);
+        if (i % 20 == 19) {
+          git(repository, "tag", "other-" + i, commit);
+          VersionCalculator all = VersionCalculator.snapshot("v");
+          all.tags(shell(repository, all.getGitFindTagsCommand()));
+
+          VersionCalculator recent = VersionCalculator.snapshot("v");
+          while (!recent.recentTags(shell(repository, recent.getGitFindRecentTagsCommand()))) {}
+          assertThat(recent.getReferenceTag(), is(all.getReferenceTag()));
+          assertThat(recent.getNextVersion(), is(all.getNextVersion()));
+        }
+      }
+    } finally {
+      try (Stream<Path> files = Files.walk(repository)) {
+        for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  @Test
+  void deltaTags() {
+    VersionCalculator vc = VersionCalculator.snapshot("v");
+    vc.tags("v1.2.3 v1.2.4-SNAPSHOT.0 other");
+    assertThat(vc.getNextVersion(), is("1.2.4-SNAPSHOT.1"));
+
+    vc.addTag("v1.2.4-SNAPSHOT.1");
+    assertThat(vc.getNextVersion(), is("1.2.4-SNAPSHOT.2"));
+
+    vc.tagListener()
+        .tagsChanged(
+            Arrays.asList("v1.2.4", "not-a-tag"),
+            Arrays.asList("v1.2.4-SNAPSHOT.0", "v1.2.4-SNAPSHOT.1"));
+    assertThat(vc.getReferenceTag().get(), is("v1.2.4"));
+    assertThat(vc.getNextVersion(), is("1.2.5-SNAPSHOT.0"));
+
+    vc.removeTag("v1.2.4");
+    assertThat(vc.getReferenceTag().get(), is("v1.2.3"));
+    assertThat(vc.getNextVersion(), is("1.2.4-SNAPSHOT.0"));
+  }
+
+  @Test
+  void reservations() {
+    VersionReservations reservations = new MemoryReservations();
+    VersionCalculator first = VersionCalculator.snapshot("v");
+    VersionCalculator second = VersionCalculator.snapshot("v");
+    VersionCalculator release = VersionCalculator.release("v");
+    for (VersionCalculator vc : Arrays.asList(first, second, release)) {
+      vc.useReservations(reservations, "repo");
+      vc.tags("v1.2.3 v1.2.4-SNAPSHOT.0");
+    }
+
+    assertThat(first.getNextVersion(), is("1.2.4-SNAPSHOT.1"));
+    assertThat(second.getNextVersion(), is("1.2.4-SNAPSHOT.2"));
+    assertThat(release.getNextVersion(), is("1.2.4"));
+
+    first.releaseReservation();
+    // kept while the calculated version stays the same
+    second.messages("fix");
+    assertThat(second.getNextVersion(), is("1.2.4-SNAPSHOT.2"));
+
+    VersionCalculator third = VersionCalculator.snapshot("v");
+    third.useReservations(reservations, "repo");
+    third.tags("v1.2.3 v1.2.4-SNAPSHOT.0");
+    assertThat(third.getNextVersion(), is("1.2.4-SNAPSHOT.1"));
+
+    second.messages("CHANGE:MINOR");
+    assertThat(second.getNextVersion(), is("1.3.0-SNAPSHOT.0"));
+    Version released = new Version("1.2.4-SNAPSHOT.2");
+    assertThat(
+        reservations.reserve("repo\nv", released, Version::incrementPreReleaseVersion),
+        is(released));
+  }
+
+  @Test
+  void conventionalCommits() throws IOException {
+    VersionCalculator vc = VersionCalculator.release("v");
+    vc.setConventionalCommits(true);
+    vc.tags("v1.2.3");
+    assertThat(vc.getGitLogCommand(), is("log --pretty=format:%x1e%H%n%B v1.2.3..HEAD"));
+
+    vc.messages(new StringReader("\u001e2222\nfix: b\n\u001e1111\nfeat(ui): a\n"));
+    assertThat(vc.getNextVersion(), is("1.3.0"));
+    assertThat(vc.getChangeCommit().get(), is("1111"));
+
+    vc.messages("\u001e3333\nchore: c\n\nBREAKING CHANGE: gone\n");
+    assertThat(vc.getNextVersion(), is("2.0.0"));
+    assertThat(vc.getChangeCommit().get(), is("3333"));
+  }
+
+  private static byte[] serialize(Object o) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(o);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static Object deserialize(byte[] bytes) throws Exception {
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+      return in.readObject();
+    }
+  }
+
   static class ChangeDetectionTest {
     private final VersionCalculator detector = VersionCalculator.snapshot();
 
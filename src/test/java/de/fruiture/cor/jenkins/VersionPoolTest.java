@@ -0,0 +1,104 @@
+package de.fruiture.cor.jenkins;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+class VersionPoolTest {
+
+  @Test
+  void sharesVersions() {
+    VersionPool pool = new VersionPool(64);
+    Version first = pool.get("1.2.3-SNAPSHOT.4");
+    assertThat(pool.get("1.2.3-SNAPSHOT.4"), sameInstance(first));
+    assertThat(pool.intern(new Version("1.2.3-SNAPSHOT.4")), sameInstance(first));
+    assertThat(Version.valueOf("2.0.0"), sameInstance(Version.valueOf("2.0.0")));
+    assertThrows(RuntimeException.class, () -> pool.get("1.2"));
+  }
+
+  @Test
+  void evictsLeastRecentlyUsed() {
+    VersionPool pool = new VersionPool(32);
+    Version kept = pool.get("1.0.0");
+    for (int i = 0; i < 1000; i++) {
+      pool.get("1.0." + (i + 1));
+      assertThat(pool.get("1.0.0"), sameInstance(kept));
+    }
+    assertThat(pool.size(), lessThanOrEqualTo(32));
+  }
+
+  @Test
+  void incrementsLikeLibrary() {
+    String[] versions = {
+      "1.2.3",
+      "1.2.3-SNAPSHOT.9",
+      "1.2.3-SNAPSHOT",
+      "1.2.3-SNAPSHOT.1.1+build.7",
+      "1.2.3-alpha-1",
+      "1.2.3--5",
+      "1.2.3-0",
+      "1.2.3-2147483647",
+      "1.2.3-99999999999",
+      "2147483647.2147483647.2147483647",
+      "1.2.3+build"
+    };
+    String[] preReleases = {"SNAPSHOT.0", "rc", "0", "01", "a..b", "x+y", ""};
+
+    for (String text : versions) {
+      Version version = new Version(text);
+      com.github.zafarkhaja.semver.Version library =
+          com.github.zafarkhaja.semver.Version.valueOf(text);
+      assertIncrement(
+          text, () -> library.incrementMajorVersion(), () -> version.incrementMajorVersion());
+      assertIncrement(
+          text, () -> library.incrementMinorVersion(), () -> version.incrementMinorVersion());
+      assertIncrement(
+          text, () -> library.incrementPatchVersion(), () -> version.incrementPatchVersion());
+      assertIncrement(
+          text,
+          () -> com.github.zafarkhaja.semver.Version.valueOf(text).incrementPreReleaseVersion(),
+          () -> version.incrementPreReleaseVersion());
+      for (String pre : preReleases) {
+        String context = text + " " + pre;
+        assertIncrement(
+            context,
+            () -> library.incrementMajorVersion(pre),
+            () -> version.incrementMajorVersion(pre));
+        assertIncrement(
+            context,
+            () -> library.incrementMinorVersion(pre),
+            () -> version.incrementMinorVersion(pre));
+        assertIncrement(
+            context,
+            () -> library.incrementPatchVersion(pre),
+            () -> version.incrementPatchVersion(pre));
+      }
+      assertThat(text, version.toString(), is(text));
+    }
+  }
+
+  private interface Increment<T> {
+    T apply();
+  }
+
+  private static void assertIncrement(
+      String context,
+      Increment<com.github.zafarkhaja.semver.Version> library,
+      Increment<Version> version) {
+    String expected = outcome(library, Object::toString);
+    assertThat(context, outcome(version, Object::toString), is(expected));
+  }
+
+  private static <T> String outcome(Increment<T> increment, Function<T, String> text) {
+    try {
+      return text.apply(increment.apply());
+    } catch (RuntimeException e) {
+      return "fails";
+    }
+  }
+}
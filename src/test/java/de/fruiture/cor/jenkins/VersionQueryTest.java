@@ -0,0 +1,85 @@
+package de.fruiture.cor.jenkins;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class VersionQueryTest {
+
+  @Test
+  void boundsConjunctions() {
+    VersionQuery range = VersionQuery.of(">=1.4.0 & <1.5.0");
+    assertThat(range.lower, is(new int[] {1, 4, 0}));
+    assertThat(range.upper, is(new int[] {1, 5, 0}));
+
+    assertThat(VersionQuery.of("1.4.*").upper, is(new int[] {1, 5, 0}));
+    assertThat(VersionQuery.of("~1.4.2").lower, is(new int[] {1, 4, 2}));
+    assertThat(VersionQuery.of("^1.4.2").upper, is(new int[] {2, 0, 0}));
+    assertThat(VersionQuery.of("1.4.0 | 2.0.0").lower, nullValue());
+    assertThat(VersionQuery.of(">=1.4.0"), sameInstance(VersionQuery.of(">=1.4.0")));
+  }
+
+  @Test
+  void agreesWithFullScan() {
+    Random random = new Random(5);
+    VersionStore store = new VersionStore();
+    List<Version> all = new ArrayList<>();
+    String[] preReleases = {"", "", "-SNAPSHOT.1", "-SNAPSHOT.12", "-rc.1", "-alpha", "+build.3"};
+    for (int i = 0; i < 2000; i++) {
+      Version version =
+          new Version(
+              random.nextInt(4)
+                  + "."
+                  + random.nextInt(8)
+                  + "."
+                  + random.nextInt(8)
+                  + preReleases[random.nextInt(preReleases.length)]);
+      store.add(version);
+      all.add(version);
+    }
+
+    String[] expressions = {
+      ">=1.4.0 & <1.5.0",
+      ">1.4.3 & <=2.0.0",
+      "<=1.4",
+      ">1.4",
+      "1.4.*",
+      "2.x",
+      "~1.4.2",
+      "~1.4",
+      "^1.4.2",
+      "^0.2",
+      "=1.4.3",
+      "1.4.3",
+      ">=3.0.0",
+      "<0.0.5",
+      "!(1.4.3)",
+      "1.4.3 | 2.*",
+      "1.0.0 - 1.3.0",
+      ">=2.0.0 & <1.0.0",
+      ">=1.2.0 & !=1.2.3"
+    };
+    for (String expression : expressions) {
+      Version expected = null;
+      for (Version version : all) {
+        if (version.satisfies(expression) && (expected == null || version.greaterThan(expected))) {
+          expected = version;
+        }
+      }
+      Version found = store.lastMatching(VersionQuery.of(expression));
+      assertThat(
+          expression,
+          found == null ? null : found.getNormalVersion() + found.getPreReleaseVersion(),
+          is(
+              expected == null
+                  ? null
+                  : expected.getNormalVersion() + expected.getPreReleaseVersion()));
+    }
+  }
+}
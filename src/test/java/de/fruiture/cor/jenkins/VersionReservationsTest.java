@@ -0,0 +1,134 @@
+package de.fruiture.cor.jenkins;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class VersionReservationsTest {
+
+  private Path directory;
+
+  private final Version candidate = new Version("1.2.3-SNAPSHOT.0");
+
+  @BeforeEach
+  void setUp() throws IOException {
+    directory = Files.createTempDirectory("version-reservations");
+  }
+
+  @AfterEach
+  void tearDown() throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      for (Path f : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+        Files.delete(f);
+      }
+    }
+  }
+
+  @Test
+  void memoryHandsOutDistinctVersions() throws Exception {
+    distinctVersions(new MemoryReservations(), 1000);
+  }
+
+  @Test
+  void filesHandOutDistinctVersions() throws Exception {
+    distinctVersions(new FileReservations(directory), 100);
+  }
+
+  @Test
+  void memoryReleases() {
+    releases(new MemoryReservations());
+  }
+
+  @Test
+  void filesRelease() {
+    releases(new FileReservations(directory));
+  }
+
+  @Test
+  void filesExpire() throws Exception {
+    FileReservations reservations = new FileReservations(directory, 1);
+    reservations.reserve("repo", candidate, Version::incrementPreReleaseVersion);
+    Thread.sleep(20);
+    assertThat(
+        reservations.reserve("repo", candidate, Version::incrementPreReleaseVersion),
+        is(candidate));
+    assertThat(Files.exists(reservations.file("repo")), is(true));
+  }
+
+  @Test
+  void memoryExpires() throws Exception {
+    MemoryReservations reservations = new MemoryReservations(1);
+    reservations.reserve("repo", candidate, Version::incrementPreReleaseVersion);
+    Thread.sleep(20);
+    assertThat(
+        reservations.reserve("repo", candidate, Version::incrementPreReleaseVersion),
+        is(candidate));
+  }
+
+  @Test
+  void memoryIsSharedAfterSerialization() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(MemoryReservations.shared());
+    }
+    try (ObjectInputStream in =
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      assertThat(in.readObject(), sameInstance(MemoryReservations.shared()));
+    }
+  }
+
+  private void releases(VersionReservations reservations) {
+    Version first = reservations.reserve("repo", candidate, Version::incrementPreReleaseVersion);
+    Version second = reservations.reserve("repo", candidate, Version::incrementPreReleaseVersion);
+    assertThat(second.toString(), is("1.2.3-SNAPSHOT.1"));
+    assertThat(
+        reservations.reserve("other", candidate, Version::incrementPreReleaseVersion),
+        is(candidate));
+
+    reservations.release("repo", first);
+    assertThat(
+        reservations.reserve("repo", candidate, Version::incrementPreReleaseVersion), is(first));
+  }
+
+  private void distinctVersions(VersionReservations reservations, int builds) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Version>> futures = new ArrayList<>();
+      for (int i = 0; i < builds; i++) {
+        futures.add(
+            executor.submit(
+                () ->
+                    reservations.reserve("repo", candidate, Version::incrementPreReleaseVersion)));
+      }
+      Set<String> versions = new TreeSet<>();
+      for (Future<Version> future : futures) {
+        versions.add(future.get().toString());
+      }
+      assertThat(versions.size(), is(builds));
+      assertThat(versions.contains("1.2.3-SNAPSHOT." + (builds - 1)), is(true));
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
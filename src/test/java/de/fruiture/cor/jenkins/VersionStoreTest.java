@@ -0,0 +1,143 @@
+package de.fruiture.cor.jenkins;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+class VersionStoreTest {
+
+  private final VersionStore store = new VersionStore();
+
+  @Test
+  void empty() {
+    assertThat(store.isEmpty(), is(true));
+    assertThat(store.last(), nullValue());
+  }
+
+  @Test
+  void keepsFirstOfEqualVersions() {
+    store.add(new Version("1.2.3+first"));
+    store.add(new Version("1.2.3"));
+    store.add(new Version("1.2.3+second"));
+
+    assertThat(store.size(), is(1));
+    assertThat(store.last().toString(), is("1.2.3+first"));
+  }
+
+  @Test
+  void ordersSnapshotsAndUnusualPreReleases() {
+    store.add(new Version("1.2.3-SNAPSHOT.10"));
+    store.add(new Version("1.2.3-SNAPSHOT.9"));
+    assertThat(store.last().toString(), is("1.2.3-SNAPSHOT.10"));
+
+    store.add(new Version("1.2.3-alpha"));
+    assertThat(store.last().toString(), is("1.2.3-alpha"));
+
+    store.add(new Version("1.2.3"));
+    assertThat(store.last().toString(), is("1.2.3"));
+    assertThat(store.size(), is(4));
+  }
+
+  @Test
+  void agreesWithTreeSet() {
+    Random random = new Random(42);
+    String[] preReleases = {"", "", "-SNAPSHOT.", "-SNAPSHOT.", "-RC.", "-alpha", "+b."};
+    TreeSet<Version> expected = new TreeSet<>();
+
+    for (int n = 0; n < 5000; n++) {
+      String pre = preReleases[random.nextInt(preReleases.length)];
+      Version version =
+          new Version(
+              random.nextInt(3)
+                  + "."
+                  + random.nextInt(3)
+                  + "."
+                  + random.nextInt(3)
+                  + pre
+                  + (pre.endsWith(".") ? String.valueOf(random.nextInt(20)) : ""));
+      expected.add(version);
+      store.add(version);
+
+      if (random.nextInt(50) == 0) {
+        assertThat(store.last().toString(), is(expected.last().toString()));
+        assertThat(store.size(), is(expected.size()));
+      }
+    }
+
+    assertThat(store.last().toString(), is(expected.last().toString()));
+    assertThat(store.size(), is(expected.size()));
+  }
+
+  @Test
+  void removesAndInsertsLikeTreeSet() {
+    Random random = new Random(7);
+    String[] preReleases = {"", "", "-SNAPSHOT.", "-SNAPSHOT.", "-RC.", "-alpha", "+b."};
+    TreeSet<Version> expected = new TreeSet<>();
+
+    for (int n = 0; n < 5000; n++) {
+      String pre = preReleases[random.nextInt(preReleases.length)];
+      Version version =
+          new Version(
+              random.nextInt(3)
+                  + "."
+                  + random.nextInt(3)
+                  + "."
+                  + random.nextInt(3)
+                  + pre
+                  + (pre.endsWith(".") ? String.valueOf(random.nextInt(20)) : ""));
+      if (random.nextInt(3) == 0) {
+        assertThat(store.remove(version), is(expected.remove(version)));
+      } else {
+        expected.add(version);
+        store.add(version);
+      }
+
+      if (random.nextInt(5) == 0) {
+        assertThat(store.size(), is(expected.size()));
+        assertThat(store.isEmpty(), is(expected.isEmpty()));
+        assertThat(
+            String.valueOf(store.last()),
+            is(expected.isEmpty() ? "null" : expected.last().toString()));
+        Version inLine =
+            expected
+                .descendingSet()
+                .stream()
+                .filter(v -> v.getMajorVersion() == 1 && v.getMinorVersion() == 1)
+                .findFirst()
+                .orElse(null);
+        assertThat(String.valueOf(store.lastInLine(1, 1)), is(String.valueOf(inLine)));
+      }
+    }
+  }
+
+  @Test
+  void lastInLineAtTheLimit() {
+    int max = Integer.MAX_VALUE;
+    store.add(new Version(max + "." + max + ".1"));
+    store.add(new Version(max + "." + max + "." + max));
+    store.add(new Version(max + ".0.0"));
+    store.add(new Version("1." + max + ".3"));
+
+    assertThat(store.lastInLine(max, -1).toString(), is(max + "." + max + "." + max));
+    assertThat(store.lastInLine(max, 0).toString(), is(max + ".0.0"));
+    assertThat(store.lastInLine(1, max).toString(), is("1." + max + ".3"));
+    assertThat(store.lastInLine(1, 0), nullValue());
+  }
+
+  @Test
+  void reinsertsRemovedVersions() {
+    store.add(new Version("1.0.0"));
+    store.add(new Version("1.1.0"));
+    assertThat(store.remove(new Version("1.1.0")), is(true));
+    assertThat(store.last().toString(), is("1.0.0"));
+    assertThat(store.remove(new Version("1.1.0")), is(false));
+
+    store.add(new Version("1.1.0+again"));
+    assertThat(store.last().toString(), is("1.1.0+again"));
+    assertThat(store.size(), is(2));
+  }
+}